@@ -0,0 +1,43 @@
+package com.example.s3jsonreader.benchmarks;
+
+import com.example.s3jsonreader.tool.SyntheticAds;
+import com.example.s3jsonreader.tool.SyntheticDatasetWriter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Synthetic datasets shared by the benchmarks. Files are generated on first use under
+ * {@code -Dbenchmark.data.dir} (default {@code target/benchmark-data}) and reused by later runs;
+ * since the content only depends on the ad count, results from different machines and commits
+ * are measured on identical input.
+ */
+final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    static SyntheticAds ads(int adCount) {
+        return new SyntheticAds(adCount);
+    }
+
+    static Path dataset(int adCount) throws IOException {
+        Path directory = Paths.get(System.getProperty("benchmark.data.dir", "target/benchmark-data"));
+        Path file = directory.resolve("ads-" + adCount + ".json");
+        if (Files.exists(file)) {
+            return file;
+        }
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            SyntheticDatasetWriter.write(ads(adCount), temp);
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.s3jsonreader.benchmarks;
+
+import com.example.s3jsonreader.pojo.POJO;
+import com.example.s3jsonreader.snapshot.AdSnapshot;
+import com.example.s3jsonreader.snapshot.AdSnapshotReader;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading the dataset document: the tree model ({@code readTree}, optionally bound to {@link POJO}s
+ * afterwards) against streaming it straight into an {@link AdSnapshot}. Input is read from a file
+ * so datasets beyond 2 GB work; after the first iteration it is served from the page cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+@State(Scope.Benchmark)
+public class IngestionBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int adCount;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AdSnapshotReader reader = new AdSnapshotReader(objectMapper);
+    private Path dataset;
+
+    @Setup
+    public void setUp() throws IOException {
+        dataset = BenchmarkData.dataset(adCount);
+    }
+
+    @Benchmark
+    public JsonNode readTree() throws IOException {
+        try (InputStream in = open()) {
+            return objectMapper.readTree(in);
+        }
+    }
+
+    @Benchmark
+    public List<POJO> readTreeAndBind() throws IOException {
+        JsonNode root = readTree();
+        List<POJO> pojos = new ArrayList<>(root.size());
+        for (JsonNode element : root) {
+            pojos.add(objectMapper.treeToValue(element, POJO.class));
+        }
+        return pojos;
+    }
+
+    @Benchmark
+    public AdSnapshot streamIntoSnapshot() throws IOException {
+        try (InputStream in = open()) {
+            return reader.read(in);
+        }
+    }
+
+    private InputStream open() throws IOException {
+        return new BufferedInputStream(Files.newInputStream(dataset), 1 << 16);
+    }
+}
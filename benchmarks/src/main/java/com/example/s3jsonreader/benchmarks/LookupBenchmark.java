@@ -0,0 +1,142 @@
+package com.example.s3jsonreader.benchmarks;
+
+import com.example.s3jsonreader.config.SchedulerConfig;
+import com.example.s3jsonreader.service.AdBatchWriter;
+import com.example.s3jsonreader.service.S3DataCacheService;
+import com.example.s3jsonreader.snapshot.AdSnapshot;
+import com.example.s3jsonreader.snapshot.AdSnapshotReader;
+import com.example.s3jsonreader.tool.SyntheticAds;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups against the cached snapshot from concurrent threads, the way the ad endpoints do them:
+ * each operation reads the current snapshot from the cache service first. Also compares one
+ * {@code POST /api/ads/batch} response of {@value #BATCH_SIZE} ads against as many
+ * {@code GET /api/ads/{adId}} responses, both serialized to a discarding stream.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+@Threads(4)
+public class LookupBenchmark {
+
+    static final int BATCH_SIZE = 100;
+    private static final int KEY_COUNT = 1 << 14;
+
+    @State(Scope.Benchmark)
+    public static class Cache {
+
+        @Param({"10000", "1000000"})
+        public int adCount;
+
+        final S3DataCacheService cacheService = new S3DataCacheService(new SchedulerConfig());
+        final AdBatchWriter batchWriter = new AdBatchWriter();
+        final ObjectMapper objectMapper = new ObjectMapper();
+        String[] adIds;
+        String[] queries;
+
+        @Setup
+        public void setUp() throws IOException {
+            try (InputStream in = Files.newInputStream(BenchmarkData.dataset(adCount))) {
+                cacheService.updateCache(new AdSnapshotReader(objectMapper).read(in), "benchmark");
+            }
+            // Fixed key sample, so every run and every commit looks up the same ads
+            SyntheticAds ads = BenchmarkData.ads(adCount);
+            SplittableRandom random = new SplittableRandom(7L);
+            adIds = new String[KEY_COUNT];
+            queries = new String[KEY_COUNT];
+            for (int i = 0; i < KEY_COUNT; i++) {
+                int ad = random.nextInt(adCount);
+                adIds[i] = ads.adId(ad);
+                queries[i] = ads.queries(ad).get(0);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int next;
+
+        int next() {
+            return next++ & (KEY_COUNT - 1);
+        }
+
+        /**
+         * @return Start of the next run of keys for a batch
+         */
+        int nextBatch() {
+            return next() % (KEY_COUNT - BATCH_SIZE);
+        }
+    }
+
+    @Benchmark
+    public String getPayload(Cache cache, Cursor cursor) {
+        return cache.cacheService.getCachedData().getPayload(cache.adIds[cursor.next()]);
+    }
+
+    @Benchmark
+    public Object getQueries(Cache cache, Cursor cursor) {
+        return cache.cacheService.getCachedData().getQueries(cache.adIds[cursor.next()]);
+    }
+
+    @Benchmark
+    public List<String> getAdsForQuery(Cache cache, Cursor cursor) {
+        return cache.cacheService.getCachedData().getAdsForQuery(cache.queries[cursor.next()]);
+    }
+
+    @Benchmark
+    public List<String> getAdsForAllQueries(Cache cache, Cursor cursor) {
+        int i = cursor.next();
+        return cache.cacheService.getCachedData()
+                .getAdsForAllQueries(List.of(cache.queries[i], cache.queries[(i + 1) & (KEY_COUNT - 1)]));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void batchResponse(Cache cache, Cursor cursor) throws IOException {
+        int from = cursor.nextBatch();
+        cache.batchWriter.write(cache.cacheService.getCachedData(),
+                Arrays.asList(cache.adIds).subList(from, from + BATCH_SIZE), OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void singleResponses(Cache cache, Cursor cursor) throws IOException {
+        int from = cursor.nextBatch();
+        for (int i = from; i < from + BATCH_SIZE; i++) {
+            AdSnapshot snapshot = cache.cacheService.getCachedData();
+            String adId = cache.adIds[i];
+            Map<String, Object> response = new HashMap<>();
+            response.put("adId", adId);
+            response.put("payload", snapshot.getPayload(adId));
+            response.put("queries", snapshot.getQueries(adId));
+            cache.objectMapper.writeValue(OutputStream.nullOutputStream(), response);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.s3jsonreader.benchmarks;
+
+import com.example.s3jsonreader.config.SchedulerConfig;
+import com.example.s3jsonreader.service.S3DataCacheService;
+import com.example.s3jsonreader.service.SerializedSnapshot;
+import com.example.s3jsonreader.snapshot.AdSnapshot;
+import com.example.s3jsonreader.snapshot.AdSnapshotReader;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishing a loaded snapshot: the swap alone, and the swap followed by the one-off
+ * serialization of the {@code /cached-data} response (plain and gzip) the loader does after it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+@State(Scope.Benchmark)
+public class PublishBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int adCount;
+
+    private S3DataCacheService cacheService;
+    private AdSnapshot snapshot;
+    private long version;
+
+    @Setup
+    public void setUp() throws IOException {
+        try (InputStream in = Files.newInputStream(BenchmarkData.dataset(adCount))) {
+            snapshot = new AdSnapshotReader(new ObjectMapper()).read(in);
+        }
+        cacheService = new S3DataCacheService(new SchedulerConfig());
+    }
+
+    @Benchmark
+    public AdSnapshot publish() {
+        cacheService.updateCache(snapshot, Long.toString(version++));
+        return cacheService.getCachedData();
+    }
+
+    @Benchmark
+    public SerializedSnapshot publishAndSerialize() {
+        cacheService.updateCache(snapshot, Long.toString(version++));
+        return cacheService.serializeCachedData();
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.s3jsonreader.benchmarks;
+
+import com.example.s3jsonreader.pojo.POJO;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converting an already parsed {@link JsonNode} element to a {@link POJO}: databind's
+ * {@code treeToValue} against walking the tree by hand, as the S3 client tests do.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+@State(Scope.Benchmark)
+public class TreeBindingBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int adCount;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private JsonNode element;
+
+    @Setup
+    public void setUp() throws IOException {
+        element = objectMapper.readTree(BenchmarkData.dataset(adCount).toFile()).get(0);
+    }
+
+    @Benchmark
+    public POJO treeToValue() throws IOException {
+        return objectMapper.treeToValue(element, POJO.class);
+    }
+
+    @Benchmark
+    public POJO walkTree() {
+        Map<String, String> adIdToPayload = new HashMap<>();
+        element.get("adIdToPayload").fields()
+                .forEachRemaining(entry -> adIdToPayload.put(entry.getKey(), entry.getValue().asText()));
+
+        Map<String, Set<String>> adIdToQueries = new HashMap<>();
+        element.get("adIdToQueries").fields().forEachRemaining(entry -> {
+            Set<String> queries = new HashSet<>();
+            entry.getValue().forEach(query -> queries.add(query.asText()));
+            adIdToQueries.put(entry.getKey(), queries);
+        });
+
+        POJO pojo = new POJO();
+        pojo.setAdIdToPayload(adIdToPayload);
+        pojo.setAdIdToQueries(adIdToQueries);
+        return pojo;
+    }
+}
@@ -6,8 +6,15 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3AsyncClientBuilder;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+
+import java.net.URI;
+import java.time.Duration;
 
 @Configuration
 public class AwsS3Config {
@@ -17,6 +24,18 @@ public class AwsS3Config {
     @Value("${aws.s3.region}")
     private String region;
 
+    @Value("${aws.s3.endpoint:}")
+    private String endpoint;
+
+    @Value("${aws.s3.path-style-access:false}")
+    private boolean pathStyleAccess;
+
+    @Value("${aws.s3.async.max-concurrency:100}")
+    private int asyncMaxConcurrency;
+
+    @Value("${aws.s3.async.connection-acquisition-timeout:10s}")
+    private Duration asyncConnectionAcquisitionTimeout;
+
     @Bean
     public S3Client s3Client() {
         logger.info("Initializing S3Client with region: {}", region);
@@ -31,10 +50,15 @@ public class AwsS3Config {
             DefaultCredentialsProvider credentialsProvider = DefaultCredentialsProvider.create();
             logger.debug("Using DefaultCredentialsProvider for AWS authentication");
             
-            S3Client client = S3Client.builder()
+            S3ClientBuilder builder = S3Client.builder()
                     .region(Region.of(region))
                     .credentialsProvider(credentialsProvider)
-                    .build();
+                    .forcePathStyle(pathStyleAccess);
+            if (!endpoint.isEmpty()) {
+                logger.info("Overriding S3 endpoint with {}", endpoint);
+                builder.endpointOverride(URI.create(endpoint));
+            }
+            S3Client client = builder.build();
             
             logger.info("S3Client successfully initialized for region: {}", region);
             return client;
@@ -44,4 +68,35 @@ public class AwsS3Config {
             throw new RuntimeException("Failed to initialize S3Client", e);
         }
     }
+
+    /**
+     * Non-blocking client for on-demand reads. Requests are multiplexed over a small pool of
+     * Netty event loop threads, so concurrent reads are bounded by {@code max-concurrency}
+     * connections rather than by request threads.
+     */
+    @Bean
+    public S3AsyncClient s3AsyncClient() {
+        logger.info("Initializing S3AsyncClient with region: {}, max concurrency: {}", region, asyncMaxConcurrency);
+
+        try {
+            S3AsyncClientBuilder builder = S3AsyncClient.builder()
+                    .region(Region.of(region))
+                    .credentialsProvider(DefaultCredentialsProvider.create())
+                    .forcePathStyle(pathStyleAccess)
+                    .httpClientBuilder(NettyNioAsyncHttpClient.builder()
+                            .maxConcurrency(asyncMaxConcurrency)
+                            .connectionAcquisitionTimeout(asyncConnectionAcquisitionTimeout));
+            if (!endpoint.isEmpty()) {
+                builder.endpointOverride(URI.create(endpoint));
+            }
+            S3AsyncClient client = builder.build();
+
+            logger.info("S3AsyncClient successfully initialized for region: {}", region);
+            return client;
+
+        } catch (Exception e) {
+            logger.error("Failed to initialize S3AsyncClient for region: {} - Error: {}", region, e.getMessage(), e);
+            throw new RuntimeException("Failed to initialize S3AsyncClient", e);
+        }
+    }
 }
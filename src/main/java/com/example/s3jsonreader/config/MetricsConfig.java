@@ -0,0 +1,89 @@
+package com.example.s3jsonreader.config;
+
+import com.example.s3jsonreader.service.S3DataCacheService;
+import com.example.s3jsonreader.snapshot.AdSnapshot;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Gauges and counters of the cached snapshot, read from {@link S3DataCacheService} when the
+ * registry is scraped, so serving requests costs nothing extra. Loader timings are recorded by
+ * {@link com.example.s3jsonreader.service.S3LoaderMetrics}; endpoint latencies are the
+ * {@code http.server.requests} timers configured under {@code management.metrics}.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder snapshotMetrics(S3DataCacheService cacheService) {
+        return registry -> {
+            Gauge.builder("snapshot.ads", cacheService, snapshotValue(AdSnapshot::adCount))
+                    .description("Ads in the cached snapshot")
+                    .register(registry);
+            Gauge.builder("snapshot.queries", cacheService, snapshotValue(AdSnapshot::queryCount))
+                    .description("Distinct queries in the cached snapshot")
+                    .register(registry);
+            Gauge.builder("snapshot.payload.bytes", cacheService, snapshotValue(AdSnapshot::payloadBytes))
+                    .description("Payload bytes held by the cached snapshot")
+                    .baseUnit("bytes")
+                    .register(registry);
+            Gauge.builder("snapshot.heap.bytes", cacheService, S3DataCacheService::estimateHeapInUse)
+                    .description("Estimated heap held by the cached snapshot and its pre-serialized response")
+                    .baseUnit("bytes")
+                    .register(registry);
+            Gauge.builder("snapshot.deltas.applied", cacheService, snapshotValue(AdSnapshot::appliedDeltaCount))
+                    .description("Deltas applied on top of the cached base snapshot")
+                    .register(registry);
+            Gauge.builder("snapshot.version", cacheService, cache -> cache.getStats().getVersion())
+                    .description("Version number of the cached snapshot, increased by every publish")
+                    .register(registry);
+            Gauge.builder("snapshot.retired.in.use", cacheService, cache -> cache.getStats().getRetiredSnapshotsInUse())
+                    .description("Replaced snapshots not released yet because requests still hold leases on them")
+                    .register(registry);
+            Gauge.builder("snapshot.retired.mapped.bytes", cacheService, cache -> cache.getStats().getRetiredMappedBytes())
+                    .description("Off-heap payloads of released snapshots that stay mapped until garbage collection")
+                    .baseUnit("bytes")
+                    .register(registry);
+            TimeGauge.builder("snapshot.staleness", cacheService, TimeUnit.MILLISECONDS, MetricsConfig::stalenessMillis)
+                    .description("Time since the cached snapshot was last updated")
+                    .register(registry);
+
+            FunctionCounter.builder("snapshot.refreshes", cacheService, cache -> cache.getStats().getReloadedRefreshes())
+                    .description("Refreshes by result")
+                    .tag("result", "reloaded")
+                    .register(registry);
+            FunctionCounter.builder("snapshot.refreshes", cacheService, cache -> cache.getStats().getSkippedUnchangedRefreshes())
+                    .description("Refreshes by result")
+                    .tag("result", "unchanged")
+                    .register(registry);
+            FunctionCounter.builder("snapshot.refreshes", cacheService, cache -> cache.getStats().getFailedLoads())
+                    .description("Refreshes by result")
+                    .tag("result", "failed")
+                    .register(registry);
+            FunctionCounter.builder("snapshot.heap.budget.rejections", cacheService, cache -> cache.getStats().getHeapBudgetRejections())
+                    .description("Refreshes abandoned because the new snapshot would exceed the heap budget")
+                    .register(registry);
+        };
+    }
+
+    private static ToDoubleFunction<S3DataCacheService> snapshotValue(ToDoubleFunction<AdSnapshot> value) {
+        return cache -> {
+            AdSnapshot snapshot = cache.getCachedData();
+            return snapshot != null ? value.applyAsDouble(snapshot) : Double.NaN;
+        };
+    }
+
+    static double stalenessMillis(S3DataCacheService cache) {
+        LocalDateTime lastUpdate = cache.getLastUpdateTime();
+        return lastUpdate != null ? Duration.between(lastUpdate, LocalDateTime.now()).toMillis() : Double.NaN;
+    }
+}
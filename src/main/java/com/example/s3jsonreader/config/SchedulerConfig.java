@@ -15,4 +15,56 @@ public class SchedulerConfig {
     private long initialDelay;
     private long fixedDelay;
     private int threadPoolSize;
+
+    /**
+     * Where ad payloads of the cached snapshot are kept
+     */
+    private PayloadStorage payloadStorage = PayloadStorage.HEAP;
+
+    /**
+     * Directory for the memory-mapped payload files used by {@link PayloadStorage#OFF_HEAP}
+     */
+    private String offHeapDirectory = System.getProperty("java.io.tmpdir");
+
+    /**
+     * File the loader persists every loaded snapshot to and restores from on startup.
+     * Empty disables the warm start.
+     */
+    private String localSnapshotPath = "";
+
+    /**
+     * Serialize every published snapshot once for {@code /api/scheduler/cached-data}
+     * instead of on every request. Costs a copy of the dataset as JSON bytes on the heap.
+     */
+    private boolean serializeCachedData = true;
+
+    /**
+     * Also keep a gzip-compressed copy of the serialized snapshot for clients accepting gzip
+     */
+    private boolean gzipCachedData = true;
+
+    /**
+     * Estimated heap the cached data and a snapshot being loaded may take together, in bytes.
+     * A refresh that would exceed it is abandoned and the cached data is kept. 0 disables the check.
+     */
+    private long heapBudgetBytes = 0;
+
+    /**
+     * What a refresh over the heap budget does while payloads are kept on the heap
+     */
+    private HeapBudgetAction heapBudgetAction = HeapBudgetAction.OFF_HEAP;
+
+    public enum PayloadStorage {
+        /** Payloads are regular Strings on the Java heap */
+        HEAP,
+        /** Payloads are UTF-8 bytes in a memory-mapped file, decoded on demand */
+        OFF_HEAP
+    }
+
+    public enum HeapBudgetAction {
+        /** Fail the refresh and keep serving the cached data */
+        REJECT,
+        /** Retry the refresh with {@link PayloadStorage#OFF_HEAP} and keep it for later refreshes */
+        OFF_HEAP
+    }
 }
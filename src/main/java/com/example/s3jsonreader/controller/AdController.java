@@ -0,0 +1,166 @@
+package com.example.s3jsonreader.controller;
+
+import com.example.s3jsonreader.service.AdBatchWriter;
+import com.example.s3jsonreader.service.S3DataCacheService;
+import com.example.s3jsonreader.service.SnapshotLease;
+import com.example.s3jsonreader.snapshot.AdSnapshot;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serves ad lookups from the snapshot cached by the scheduled loader. Each request pins one
+ * snapshot version with a lease, which is closed once the response is written.
+ */
+@RestController
+@RequestMapping("/api/ads")
+public class AdController {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdController.class);
+
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    private final S3DataCacheService cacheService;
+    private final AdBatchWriter batchWriter;
+
+    public AdController(S3DataCacheService cacheService, AdBatchWriter batchWriter) {
+        this.cacheService = cacheService;
+        this.batchWriter = batchWriter;
+    }
+
+    /**
+     * Get the payload and queries of one ad
+     */
+    @GetMapping("/{adId}")
+    public ResponseEntity<?> getAd(@PathVariable String adId) {
+        logger.debug("Looking up ad: {}", adId);
+
+        try (SnapshotLease lease = cacheService.acquire()) {
+            if (lease == null) {
+                return noDataResponse();
+            }
+            AdSnapshot snapshot = lease.getData();
+            if (!snapshot.containsAd(adId)) {
+                Map<String, String> response = new HashMap<>();
+                response.put("message", "Unknown ad id: " + adId);
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+            }
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("adId", adId);
+            response.put("payload", snapshot.getPayload(adId));
+            response.put("queries", snapshot.getQueries(adId));
+            return ResponseEntity.ok(response);
+        }
+    }
+
+    /**
+     * Get the payloads and queries of many ads in one round trip, keyed by ad id (null for unknown ids).
+     * The response is streamed from the snapshot without building an intermediate map.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<?> getAds(@RequestBody List<String> adIds, HttpServletRequest request) {
+        logger.debug("Looking up {} ads", adIds.size());
+
+        if (adIds.size() > MAX_BATCH_SIZE) {
+            Map<String, String> response = new HashMap<>();
+            response.put("error", "At most " + MAX_BATCH_SIZE + " ad ids per batch, got " + adIds.size());
+            return ResponseEntity.badRequest().body(response);
+        }
+        if (adIds.stream().anyMatch(adId -> adId == null || adId.isBlank())) {
+            Map<String, String> response = new HashMap<>();
+            response.put("error", "Ad ids must not be null or blank");
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        // Pin one version so every ad in the batch is answered from it; the lease ends with the stream
+        SnapshotLease lease = cacheService.acquire();
+        if (lease == null) {
+            return noDataResponse();
+        }
+
+        LinkedHashSet<String> distinctAdIds = new LinkedHashSet<>(adIds);
+        // Released here too in case the body never runs
+        AsyncCompletion.onCompletion(request, lease, lease::close);
+        StreamingResponseBody body = out -> {
+            try (lease) {
+                batchWriter.write(lease.getData(), distinctAdIds, out);
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Get the ids of the ads matching a query, or all of several queries when {@code q} is repeated
+     */
+    @GetMapping("/by-query")
+    public ResponseEntity<?> getAdsByQuery(@RequestParam("q") List<String> queries) {
+        logger.debug("Looking up ads for queries: {}", queries);
+
+        if (queries.isEmpty()) {
+            Map<String, String> response = new HashMap<>();
+            response.put("error", "At least one query is required");
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        try (SnapshotLease lease = cacheService.acquire()) {
+            if (lease == null) {
+                return noDataResponse();
+            }
+
+            Map<String, Object> response = new HashMap<>();
+            if (queries.size() == 1) {
+                response.put("query", queries.get(0));
+                response.put("adIds", lease.getData().getAdsForQuery(queries.get(0)));
+            } else {
+                response.put("queries", queries);
+                response.put("adIds", lease.getData().getAdsForAllQueries(queries));
+            }
+            return ResponseEntity.ok(response);
+        }
+    }
+
+    /**
+     * Get the ids of the ads matching each of the given queries, keyed by query
+     */
+    @PostMapping("/by-query/batch")
+    public ResponseEntity<?> getAdsByQueries(@RequestBody List<String> queries) {
+        logger.debug("Looking up ads for {} queries", queries.size());
+
+        // Pin one version so every query in the batch is answered from it
+        try (SnapshotLease lease = cacheService.acquire()) {
+            if (lease == null) {
+                return noDataResponse();
+            }
+
+            Map<String, List<String>> response = new LinkedHashMap<>();
+            for (String query : queries) {
+                response.put(query, lease.getData().getAdsForQuery(query));
+            }
+            return ResponseEntity.ok(response);
+        }
+    }
+
+    private ResponseEntity<?> noDataResponse() {
+        Map<String, String> response = new HashMap<>();
+        response.put("message", "No data available in cache. The scheduler may still be loading initial data.");
+        return ResponseEntity.status(HttpStatus.NO_CONTENT).body(response);
+    }
+}
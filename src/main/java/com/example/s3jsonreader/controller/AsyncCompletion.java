@@ -0,0 +1,34 @@
+package com.example.s3jsonreader.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Releases what a streamed response body holds once the async request completes. The body may
+ * never run (client gone before dispatch, async timeout, executor rejection), so closing a
+ * resource only inside the body can leak it.
+ */
+final class AsyncCompletion {
+
+    private AsyncCompletion() {
+    }
+
+    /**
+     * Runs the action when the async request serving the response body completes, however it ends.
+     * The action also runs after the body has finished normally, so it must tolerate running twice.
+     *
+     * @param key Unique key of the registration, typically the resource itself
+     */
+    static void onCompletion(HttpServletRequest request, Object key, Runnable action) {
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(key, new CallableProcessingInterceptor() {
+            @Override
+            public <T> void afterCompletion(NativeWebRequest webRequest, Callable<T> task) {
+                action.run();
+            }
+        });
+    }
+}
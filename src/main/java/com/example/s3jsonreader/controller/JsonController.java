@@ -1,17 +1,29 @@
 package com.example.s3jsonreader.controller;
 
+import com.example.s3jsonreader.service.JsonStreamValidator;
+import com.example.s3jsonreader.service.S3AsyncService;
+import com.example.s3jsonreader.service.S3ObjectCache;
+import com.example.s3jsonreader.service.S3ObjectStream;
 import com.example.s3jsonreader.service.S3Service;
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/api")
@@ -19,43 +31,137 @@ public class JsonController {
 
     private static final Logger logger = LoggerFactory.getLogger(JsonController.class);
     
+    private final S3AsyncService s3AsyncService;
+    private final S3ObjectCache objectCache;
     private final S3Service s3Service;
+    private final JsonFactory jsonFactory = new JsonFactory();
 
-    public JsonController(S3Service s3Service) {
+    public JsonController(S3AsyncService s3AsyncService, S3ObjectCache objectCache, S3Service s3Service) {
+        this.s3AsyncService = s3AsyncService;
+        this.objectCache = objectCache;
         this.s3Service = s3Service;
-        logger.info("JsonController initialized with S3Service");
+        logger.info("JsonController initialized with S3AsyncService");
     }
 
+    /**
+     * Reads the JSON file from S3 without holding the request thread: the thread is released
+     * once the request is sent, and the response is written when the S3 read completes.
+     * Reads by key are served from the {@link S3ObjectCache}.
+     */
     @GetMapping("/json")
-    public ResponseEntity<?> getJsonFromS3(@RequestParam(required = false) String key) {
+    public CompletableFuture<ResponseEntity<?>> getJsonFromS3(@RequestParam(required = false) String key) {
         logger.info("Received request to get JSON from S3. Key parameter: {}", key);
-        
-        try {
-            JsonNode jsonData;
-            if (key != null && !key.isEmpty()) {
-                logger.debug("Fetching JSON with custom key: {}", key);
-                jsonData = s3Service.readJsonFromS3ByKey(key);
-            } else {
-                logger.debug("Fetching JSON with default key from configuration");
-                jsonData = s3Service.readJsonFromS3();
+
+        CompletableFuture<JsonNode> jsonData;
+        if (key != null && !key.isEmpty()) {
+            logger.debug("Fetching JSON with custom key: {}", key);
+            jsonData = objectCache.get(key);
+        } else {
+            logger.debug("Fetching JSON with default key from configuration");
+            jsonData = s3AsyncService.readJsonFromS3Async();
+        }
+
+        return jsonData.handle((json, error) -> {
+            if (error == null) {
+                logger.info("Successfully retrieved JSON from S3. Response size: {} bytes",
+                        json.toString().length());
+                return ResponseEntity.ok(json);
             }
-            
-            logger.info("Successfully retrieved JSON from S3. Response size: {} bytes", 
-                    jsonData.toString().length());
-            return ResponseEntity.ok(jsonData);
-            
+
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof IllegalArgumentException) {
+                logger.warn("Bad request - Invalid parameter: {}", cause.getMessage());
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body("{\"error\": \"" + cause.getMessage() + "\"}");
+            }
+            if (cause instanceof IOException) {
+                logger.error("Failed to retrieve JSON from S3: {}", cause.getMessage(), cause);
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .body("{\"error\": \"" + cause.getMessage() + "\"}");
+            }
+            logger.error("Unexpected error while processing request: {}", cause.getMessage(), cause);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("{\"error\": \"An unexpected error occurred\"}");
+        });
+    }
+
+    /**
+     * Streams the object to the client exactly as stored in S3, without parsing it, through a
+     * fixed-size buffer. Content-Length and ETag are taken from S3, and a matching If-None-Match
+     * is answered with 304. With {@code validate=true} the bytes are checked with a streaming
+     * parser as they pass; invalid JSON aborts the response, so the client sees a body shorter
+     * than its Content-Length instead of a complete 200. Open streams count against
+     * {@code aws.s3.passthrough.max-concurrent-requests}, not the loader's request slots.
+     */
+    @GetMapping(value = "/json", params = "mode=raw")
+    public ResponseEntity<?> getRawJsonFromS3(
+            @RequestParam(required = false) String key,
+            @RequestParam(defaultValue = "false") boolean validate,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            HttpServletRequest request) {
+        logger.info("Received request to stream raw JSON from S3. Key parameter: {}, validate: {}", key, validate);
+
+        S3ObjectStream object;
+        try {
+            object = key != null && !key.isEmpty()
+                    ? s3Service.openObject(key, ifNoneMatch)
+                    : s3Service.openJsonFile(ifNoneMatch);
         } catch (IllegalArgumentException e) {
             logger.warn("Bad request - Invalid parameter: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body("{\"error\": \"" + e.getMessage() + "\"}");
         } catch (IOException e) {
-            logger.error("Failed to retrieve JSON from S3: {}", e.getMessage(), e);
+            logger.error("Failed to open JSON in S3: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("{\"error\": \"" + e.getMessage() + "\"}");
-        } catch (Exception e) {
-            logger.error("Unexpected error while processing request: {}", e.getMessage(), e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body("{\"error\": \"An unexpected error occurred\"}");
+        }
+
+        if (!object.isModified()) {
+            closeQuietly(object);
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(object.getETag()).build();
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(object.getETag())
+                .contentType(object.getContentType() != null
+                        ? MediaType.parseMediaType(object.getContentType())
+                        : MediaType.APPLICATION_JSON);
+        if (object.getContentLength() >= 0) {
+            response.contentLength(object.getContentLength());
+        }
+        if (object.getLastModified() != null) {
+            response.lastModified(object.getLastModified());
+        }
+        // Compressed objects are passed through compressed, for the client to decode
+        boolean validateContent = validate && object.getContentEncoding() == null;
+        if (object.getContentEncoding() != null) {
+            response.header(HttpHeaders.CONTENT_ENCODING, object.getContentEncoding());
+            if (validate) {
+                logger.info("Not validating {}, it is stored with Content-Encoding {}", object.getKey(),
+                        object.getContentEncoding());
+            }
+        }
+
+        StreamingResponseBody body = out -> {
+            try (S3ObjectStream content = object) {
+                long copied = content.transferTo(out, validateContent ? new JsonStreamValidator(jsonFactory) : null);
+                logger.info("Streamed {} bytes of {} from S3", copied, content.getKey());
+            } catch (IOException e) {
+                logger.error("Failed to stream {} from S3: {}", object.getKey(), e.getMessage());
+                throw e;
+            }
+        };
+        // The body may never run (client gone before dispatch, async timeout); the connection and
+        // the request slot are released when the async request completes either way
+        AsyncCompletion.onCompletion(request, object, object::abort);
+        return response.body(body);
+    }
+
+    private static void closeQuietly(S3ObjectStream object) {
+        try {
+            object.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close S3 object stream: {}", e.getMessage());
         }
     }
 }
@@ -1,20 +1,34 @@
 package com.example.s3jsonreader.controller;
 
+import com.example.s3jsonreader.service.S3ConcurrencyLimiter;
 import com.example.s3jsonreader.service.S3DataCacheService;
+import com.example.s3jsonreader.service.S3FetchExecutors;
+import com.example.s3jsonreader.service.S3ObjectCache;
 import com.example.s3jsonreader.service.S3ScheduledLoader;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.example.s3jsonreader.service.SerializedSnapshot;
+import com.example.s3jsonreader.service.SnapshotLease;
+import com.example.s3jsonreader.service.SnapshotProjectionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -25,11 +39,26 @@ public class SchedulerController {
 
     private final S3ScheduledLoader scheduledLoader;
     private final S3DataCacheService cacheService;
+    private final S3ObjectCache objectCache;
+    private final S3ConcurrencyLimiter concurrencyLimiter;
+    private final S3FetchExecutors fetchExecutors;
+    private final SnapshotProjectionService projectionService;
+    private final ObjectMapper objectMapper;
 
     public SchedulerController(S3ScheduledLoader scheduledLoader,
-                               S3DataCacheService cacheService) {
+                               S3DataCacheService cacheService,
+                               S3ObjectCache objectCache,
+                               S3ConcurrencyLimiter concurrencyLimiter,
+                               S3FetchExecutors fetchExecutors,
+                               SnapshotProjectionService projectionService,
+                               ObjectMapper objectMapper) {
         this.scheduledLoader = scheduledLoader;
         this.cacheService = cacheService;
+        this.objectCache = objectCache;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.fetchExecutors = fetchExecutors;
+        this.projectionService = projectionService;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -45,28 +74,161 @@ public class SchedulerController {
         status.put("schedulerRunning", scheduledLoader.isRunning());
         status.put("successfulLoads", stats.getSuccessfulLoads());
         status.put("failedLoads", stats.getFailedLoads());
+        status.put("skippedUnchangedRefreshes", stats.getSkippedUnchangedRefreshes());
+        status.put("reloadedRefreshes", stats.getReloadedRefreshes());
         status.put("lastUpdateTime", stats.getLastUpdateTime());
         status.put("hasData", stats.isHasData());
+        status.put("version", stats.getVersion());
+        status.put("retiredSnapshotsInUse", stats.getRetiredSnapshotsInUse());
+        status.put("retiredMappedBytes", stats.getRetiredMappedBytes());
+        status.put("baseVersion", stats.getBaseVersion());
+        status.put("appliedDeltas", stats.getAppliedDeltas());
+        status.put("lastDeltaApplyMillis", stats.getLastDeltaApplyMillis());
+        status.put("snapshotHeapBytes", stats.getSnapshotHeapBytes());
+        status.put("previousSnapshotHeapBytes", stats.getPreviousSnapshotHeapBytes());
+        status.put("heapBudgetRejections", stats.getHeapBudgetRejections());
+        status.put("payloadStorage", scheduledLoader.getPayloadStorage());
+        status.put("keyCache", objectCache.getStats());
+        status.put("s3Requests", Map.of(
+                "inFlight", concurrencyLimiter.getInFlight(),
+                "waiting", concurrencyLimiter.getWaiting(),
+                "maxConcurrent", concurrencyLimiter.getMaxConcurrentRequests(),
+                "virtualThreads", fetchExecutors.isVirtualThreads()
+        ));
 
         return ResponseEntity.ok(status);
     }
 
     /**
-     * Get the cached data
+     * Get the cached data, in the same array-of-elements shape as the source document
+     * (all elements merged into one). The body is serialized once per snapshot; clients
+     * revalidating with the ETag get a 304 and clients accepting gzip get the compressed copy.
      */
     @GetMapping("/cached-data")
-    public ResponseEntity<?> getCachedData() {
+    public ResponseEntity<?> getCachedData(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            HttpServletRequest request) {
         logger.info("Retrieving cached data");
 
-        JsonNode cachedData = cacheService.getCachedData();
-
-        if (cachedData == null) {
+        SnapshotLease lease = cacheService.acquire();
+        if (lease == null) {
             Map<String, String> response = new HashMap<>();
             response.put("message", "No data available in cache. The scheduler may still be loading initial data.");
             return ResponseEntity.status(HttpStatus.NO_CONTENT).body(response);
         }
 
-        return ResponseEntity.ok(cachedData);
+        boolean streaming = false;
+        try {
+            SerializedSnapshot serialized = cacheService.getSerializedData(lease.getVersion());
+            ResponseEntity<?> response = cachedDataResponse(serialized, ifNoneMatch, acceptEncoding);
+            if (response != null) {
+                return response;
+            }
+            streaming = true;
+            return ResponseEntity.ok().eTag(serialized.getETag()).contentType(MediaType.APPLICATION_JSON)
+                    .body(writeWhilePinned(request, lease, List.of(lease.getData().asPojo())));
+        } finally {
+            if (!streaming) {
+                lease.close();
+            }
+        }
+    }
+
+    /**
+     * @return The response with pre-serialized bytes, or null if the snapshot has to be serialized for the request
+     */
+    private ResponseEntity<?> cachedDataResponse(SerializedSnapshot serialized, String ifNoneMatch, String acceptEncoding) {
+        boolean gzip = serialized.getGzip() != null && acceptsGzip(acceptEncoding);
+        String eTag = gzip ? serialized.getGzipETag() : serialized.getETag();
+        if (serialized.matches(ifNoneMatch)) {
+            logger.debug("Cached data unchanged for client (ETag: {})", eTag);
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(eTag);
+        if (serialized.getGzip() != null) {
+            response.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(serialized.getGzip());
+        }
+        if (serialized.getJson() != null) {
+            return response.contentType(MediaType.APPLICATION_JSON).body(serialized.getJson());
+        }
+        return null;
+    }
+
+    /**
+     * Writes a value that reads from the pinned snapshot as the response is streamed, and closes
+     * the lease once it is written, or once the request completes if the body never runs
+     */
+    private StreamingResponseBody writeWhilePinned(HttpServletRequest request, SnapshotLease lease, Object value) {
+        AsyncCompletion.onCompletion(request, lease, lease::close);
+        return out -> {
+            try (lease) {
+                objectMapper.writeValue(StreamUtils.nonClosing(out), value);
+            }
+        };
+    }
+
+    /**
+     * Get parts of the cached data selected by JSON Pointers into the merged element, e.g.
+     * {@code ?path=/adIdToPayload/ad_001&path=/adIdToQueries/ad_001}. Each path maps to its value,
+     * or to null if nothing is there.
+     */
+    @GetMapping("/cached-data/projection")
+    public ResponseEntity<?> getCachedDataProjection(@RequestParam("path") List<String> paths,
+                                                     HttpServletRequest request) {
+        logger.info("Projecting cached data on paths: {}", paths);
+
+        // Whole maps are projected as views of the snapshot, so it stays pinned until they are written
+        SnapshotLease lease = cacheService.acquire();
+        boolean streaming = false;
+        try {
+            Map<String, Object> values;
+            try {
+                values = projectionService.project(paths, lease != null ? lease.getData() : null);
+            } catch (IllegalArgumentException e) {
+                logger.warn("Bad request - Invalid path: {}", e.getMessage());
+                Map<String, String> response = new HashMap<>();
+                response.put("error", e.getMessage());
+                return ResponseEntity.badRequest().body(response);
+            }
+
+            if (values == null) {
+                Map<String, String> response = new HashMap<>();
+                response.put("message", "No data available in cache. The scheduler may still be loading initial data.");
+                return ResponseEntity.status(HttpStatus.NO_CONTENT).body(response);
+            }
+            if (values.values().stream().allMatch(value -> value == null)) {
+                Map<String, Object> response = new HashMap<>();
+                response.put("message", "Nothing found at the requested paths");
+                response.put("paths", paths);
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+            }
+            streaming = true;
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(writeWhilePinned(request, lease, values));
+        } finally {
+            if (!streaming && lease != null) {
+                lease.close();
+            }
+        }
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
     }
 
     /**
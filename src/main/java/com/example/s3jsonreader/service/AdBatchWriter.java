@@ -0,0 +1,54 @@
+package com.example.s3jsonreader.service;
+
+import com.example.s3jsonreader.snapshot.AdSnapshot;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Writes multi-get responses straight from the snapshot to the output with a streaming generator:
+ * {@code {"ad_1": {"payload": "...", "queries": [...]}, "ad_unknown": null}}. Payloads and query
+ * sets are read from the snapshot as the response is written, so no per-request map is built.
+ */
+@Component
+public class AdBatchWriter {
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    /**
+     * @param adIds Ad ids to look up, without duplicates, in response order
+     * @param out Left open; the caller owns it
+     */
+    public void write(AdSnapshot snapshot, Collection<String> adIds, OutputStream out) throws IOException {
+        try (JsonGenerator generator = jsonFactory.createGenerator(StreamUtils.nonClosing(out))) {
+            generator.writeStartObject();
+            for (String adId : adIds) {
+                generator.writeFieldName(adId);
+                Set<String> queries = snapshot.getQueries(adId);
+                String payload = snapshot.getPayload(adId);
+                if (queries == null && payload == null) {
+                    generator.writeNull();
+                    continue;
+                }
+
+                generator.writeStartObject();
+                generator.writeStringField("payload", payload);
+                generator.writeArrayFieldStart("queries");
+                if (queries != null) {
+                    for (String query : queries) {
+                        generator.writeString(query);
+                    }
+                }
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.s3jsonreader.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+
+import java.io.IOException;
+
+/**
+ * Checks that a byte stream is well-formed JSON as it is copied, chunk by chunk, with Jackson's
+ * non-blocking parser. Only tokens are scanned; nothing is materialized, so memory stays constant
+ * whatever the document size.
+ */
+public class JsonStreamValidator {
+
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+    private boolean sawToken;
+
+    public JsonStreamValidator(JsonFactory jsonFactory) throws IOException {
+        this.parser = jsonFactory.createNonBlockingByteArrayParser();
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    /**
+     * Scans the next chunk. The array may be reused by the caller once this returns.
+     *
+     * @throws IOException if the chunk makes the document malformed
+     */
+    public void feed(byte[] buffer, int offset, int length) throws IOException {
+        feeder.feedInput(buffer, offset, offset + length);
+        drain();
+    }
+
+    /**
+     * @throws IOException if the document is empty or ends before it is complete
+     */
+    public void finish() throws IOException {
+        feeder.endOfInput();
+        drain();
+        if (!sawToken || parser.getParsingContext().inObject() || parser.getParsingContext().inArray()) {
+            throw new IOException("Truncated JSON document");
+        }
+        parser.close();
+    }
+
+    private void drain() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            sawToken = true;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.s3jsonreader.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Non-blocking counterpart of {@link S3Service} for on-demand reads. No thread waits for the
+ * S3 round trip: once the response headers arrive, the body is streamed from the SDK's event loop
+ * into the parser, which runs on a small pool sized by {@code aws.s3.async.parse-threads}. The body
+ * is never buffered whole, so objects of any size are parsed with bounded memory.
+ * The returned futures fail with {@link IllegalArgumentException} for an invalid key and with
+ * {@link IOException} for S3 and parse errors, mirroring the synchronous methods.
+ */
+@Service
+public class S3AsyncService {
+
+    private static final Logger logger = LoggerFactory.getLogger(S3AsyncService.class);
+
+    private static final int HTTP_NOT_MODIFIED = 304;
+
+    private final S3AsyncClient s3AsyncClient;
+    private final S3FetchExecutors fetchExecutors;
+    private final ObjectMapper objectMapper;
+
+    @Value("${aws.s3.bucket-name}")
+    private String bucketName;
+
+    @Value("${aws.s3.json-file-key}")
+    private String jsonFileKey;
+
+    @Value("${aws.s3.async.parse-threads:4}")
+    private int parseThreads;
+
+    private volatile ExecutorService parseExecutor;
+
+    public S3AsyncService(S3AsyncClient s3AsyncClient, S3FetchExecutors fetchExecutors) {
+        this.s3AsyncClient = s3AsyncClient;
+        this.fetchExecutors = fetchExecutors;
+        this.objectMapper = new ObjectMapper();
+        logger.info("S3AsyncService initialized with S3AsyncClient");
+    }
+
+    /**
+     * Reads the configured JSON file without blocking the calling thread.
+     */
+    public CompletableFuture<JsonNode> readJsonFromS3Async() {
+        return readJsonAsync(jsonFileKey);
+    }
+
+    /**
+     * Reads the given key without blocking the calling thread.
+     *
+     * @param key The S3 key to read
+     */
+    public CompletableFuture<JsonNode> readJsonFromS3ByKeyAsync(String key) {
+        if (key == null || key.trim().isEmpty()) {
+            logger.error("Invalid key provided: null or empty");
+            return CompletableFuture.failedFuture(new IllegalArgumentException("S3 key cannot be null or empty"));
+        }
+        return readJsonAsync(key);
+    }
+
+    private CompletableFuture<JsonNode> readJsonAsync(String key) {
+        return readFromS3IfModifiedAsync(key, null, objectMapper::readTree).thenApply(S3ReadResult::getData);
+    }
+
+    /**
+     * Reads the given key only if its ETag differs from the given one, without blocking the calling thread.
+     *
+     * @param key The S3 key to read
+     * @param previousETag ETag of the version the caller already holds, or null to read unconditionally
+     * @param parser Converts the object content into the returned representation
+     * @return the parsed object with its size, or a not-modified result carrying the previous ETag
+     */
+    public <T> CompletableFuture<S3ReadResult<T>> readFromS3IfModifiedAsync(String key, String previousETag,
+                                                                         S3ObjectParser<T> parser) {
+        logger.info("Attempting async read of JSON from S3 - Bucket: {}, Key: {}, ETag: {}", bucketName, key, previousETag);
+
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .ifNoneMatch(previousETag)
+                .build();
+
+        CompletableFuture<ResponseInputStream<GetObjectResponse>> download;
+        try {
+            download = s3AsyncClient.getObject(getObjectRequest, AsyncResponseTransformer.toBlockingInputStream());
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(toIOException(key, e));
+        }
+
+        // Completes with the headers; the parser blocks on the body as it arrives, so not on the SDK's threads
+        return download.handleAsync((body, error) -> {
+            if (error != null) {
+                Throwable cause = unwrap(error);
+                if (cause instanceof S3Exception && ((S3Exception) cause).statusCode() == HTTP_NOT_MODIFIED) {
+                    logger.info("S3 object unchanged since last read - Bucket: {}, Key: {}, ETag: {}",
+                            bucketName, key, previousETag);
+                    return S3ReadResult.notModified(previousETag, null);
+                }
+                throw new CompletionException(toIOException(key, cause));
+            }
+            GetObjectResponse response = body.response();
+            logger.debug("S3 Response - Content Type: {}, Content Length: {}, ETag: {}",
+                    response.contentType(), response.contentLength(), response.eTag());
+            try (InputStream content = S3ContentDecoder.decode(body, key, response.contentEncoding())) {
+                T data = parser.parse(content);
+                logger.info("Successfully read and parsed JSON from S3 asynchronously - Bucket: {}, Key: {}",
+                        bucketName, key);
+                return S3ReadResult.modified(data, response.eTag(), response.lastModified(),
+                        response.contentLength() != null ? response.contentLength() : -1);
+            } catch (IOException e) {
+                // Stop the rest of the body instead of draining it
+                body.abort();
+                logger.error("IOException occurred while parsing JSON from S3 - Bucket: {}, Key: {}", bucketName, key, e);
+                throw new CompletionException(e);
+            }
+        }, parseExecutor());
+    }
+
+    /**
+     * Executor that parses response bodies as they are streamed in, created on first use
+     */
+    private ExecutorService parseExecutor() {
+        ExecutorService executor = parseExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = parseExecutor;
+                if (executor == null) {
+                    executor = fetchExecutors.newExecutor("s3-async-parse-", parseThreads);
+                    parseExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ExecutorService executor = parseExecutor;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private IOException toIOException(String key, Throwable error) {
+        if (error instanceof S3Exception) {
+            S3Exception e = (S3Exception) error;
+            logger.error("S3 Exception occurred while reading from bucket: {}, key: {} - Error Code: {}, Status Code: {}, Message: {}",
+                    bucketName, key, e.awsErrorDetails().errorCode(),
+                    e.statusCode(), e.awsErrorDetails().errorMessage(), e);
+            return new IOException("Failed to read JSON file from S3: " + e.awsErrorDetails().errorMessage(), e);
+        }
+        logger.error("Unexpected error occurred while reading from S3 - Bucket: {}, Key: {}", bucketName, key, error);
+        return new IOException("Unexpected error reading from S3", error);
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.s3jsonreader.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds the number of blocking S3 requests in flight, so that fetch threads (virtual ones in
+ * particular, which are not limited by a pool size) queue here instead of exhausting the SDK's
+ * connection pool and failing with connection acquisition timeouts. A permit is held until the
+ * response body has been consumed, since the connection stays busy until then.
+ */
+@Component
+public class S3ConcurrencyLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(S3ConcurrencyLimiter.class);
+
+    private final Semaphore permits;
+    private final int maxConcurrentRequests;
+    private final Duration acquireTimeout;
+
+    @Autowired
+    public S3ConcurrencyLimiter(@Value("${aws.s3.max-concurrent-requests:50}") int maxConcurrentRequests,
+                                @Value("${aws.s3.acquire-timeout:60s}") Duration acquireTimeout) {
+        if (maxConcurrentRequests <= 0) {
+            throw new IllegalArgumentException("Max concurrent S3 requests must be positive");
+        }
+        this.permits = new Semaphore(maxConcurrentRequests, true);
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    public S3ConcurrencyLimiter(int maxConcurrentRequests) {
+        this(maxConcurrentRequests, Duration.ofSeconds(60));
+    }
+
+    /**
+     * Waits for a free request slot. Close the returned permit once the response has been read.
+     *
+     * @throws IOException if no slot frees up within {@code aws.s3.acquire-timeout} or the thread is interrupted
+     */
+    public Permit acquire() throws IOException {
+        try {
+            if (!permits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                logger.warn("No S3 request slot freed up within {} ({} requests in flight)",
+                        acquireTimeout, maxConcurrentRequests);
+                throw new IOException("Timed out waiting for an S3 request slot");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an S3 request slot");
+        }
+        return new Permit();
+    }
+
+    /**
+     * @return The number of S3 requests currently holding a slot
+     */
+    public int getInFlight() {
+        return maxConcurrentRequests - permits.availablePermits();
+    }
+
+    /**
+     * @return The number of threads waiting for a slot
+     */
+    public int getWaiting() {
+        return permits.getQueueLength();
+    }
+
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    /**
+     * A held request slot, released once on close
+     */
+    public final class Permit implements AutoCloseable {
+
+        private boolean released;
+
+        private Permit() {
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                permits.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.s3jsonreader.service;
+
+import com.github.luben.zstd.ZstdInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Transparently decompresses gzip and zstd objects as they are read, so the parser consumes the
+ * decompressed bytes chunk by chunk and the whole document is never held in memory. The codec is
+ * taken from the object's Content-Encoding, then from the key suffix ({@code .gz}, {@code .zst}),
+ * then from the magic bytes at the start of the body; anything else is passed through unchanged.
+ */
+public final class S3ContentDecoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(S3ContentDecoder.class);
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final byte[] GZIP_MAGIC = {(byte) 0x1f, (byte) 0x8b};
+    private static final byte[] ZSTD_MAGIC = {(byte) 0x28, (byte) 0xb5, (byte) 0x2f, (byte) 0xfd};
+
+    enum Codec {
+        NONE, GZIP, ZSTD
+    }
+
+    private S3ContentDecoder() {
+    }
+
+    /**
+     * @param key Key of the object, used for suffix detection; may be null
+     * @param contentEncoding Content-Encoding of the object; may be null
+     * @return A stream of the decompressed content, which closes the given stream when closed
+     */
+    public static InputStream decode(InputStream in, String key, String contentEncoding) throws IOException {
+        Codec codec = fromContentEncoding(contentEncoding);
+        if (codec == Codec.NONE) {
+            codec = fromKey(key);
+        }
+        if (codec == Codec.NONE) {
+            if (!in.markSupported()) {
+                in = new BufferedInputStream(in, BUFFER_SIZE);
+            }
+            codec = fromMagic(in);
+        }
+
+        switch (codec) {
+            case GZIP:
+                logger.debug("Decompressing {} as gzip", key);
+                return new GZIPInputStream(in, BUFFER_SIZE);
+            case ZSTD:
+                logger.debug("Decompressing {} as zstd", key);
+                return new BufferedInputStream(new ZstdInputStream(in), BUFFER_SIZE);
+            default:
+                return in;
+        }
+    }
+
+    static Codec fromContentEncoding(String contentEncoding) {
+        if (contentEncoding == null) {
+            return Codec.NONE;
+        }
+        String encoding = contentEncoding.trim().toLowerCase(Locale.ROOT);
+        if (encoding.equals("gzip") || encoding.equals("x-gzip")) {
+            return Codec.GZIP;
+        }
+        if (encoding.equals("zstd")) {
+            return Codec.ZSTD;
+        }
+        return Codec.NONE;
+    }
+
+    static Codec fromKey(String key) {
+        if (key == null) {
+            return Codec.NONE;
+        }
+        String lower = key.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".gz") || lower.endsWith(".gzip")) {
+            return Codec.GZIP;
+        }
+        if (lower.endsWith(".zst") || lower.endsWith(".zstd")) {
+            return Codec.ZSTD;
+        }
+        return Codec.NONE;
+    }
+
+    private static Codec fromMagic(InputStream in) throws IOException {
+        byte[] head = new byte[ZSTD_MAGIC.length];
+        in.mark(head.length);
+        int read = in.readNBytes(head, 0, head.length);
+        in.reset();
+        if (startsWith(head, read, GZIP_MAGIC)) {
+            return Codec.GZIP;
+        }
+        if (startsWith(head, read, ZSTD_MAGIC)) {
+            return Codec.ZSTD;
+        }
+        return Codec.NONE;
+    }
+
+    private static boolean startsWith(byte[] head, int length, byte[] magic) {
+        if (length < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (head[i] != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
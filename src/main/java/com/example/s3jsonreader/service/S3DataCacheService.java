@@ -1,6 +1,9 @@
 package com.example.s3jsonreader.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.example.s3jsonreader.config.SchedulerConfig;
+import com.example.s3jsonreader.snapshot.AdSnapshot;
+import com.example.s3jsonreader.snapshot.MappedPayloadStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.ToString;
@@ -9,44 +12,206 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 public class S3DataCacheService {
     
     private static final Logger logger = LoggerFactory.getLogger(S3DataCacheService.class);
     
-    private final AtomicReference<JsonNode> cachedData = new AtomicReference<>();
-    private final AtomicReference<LocalDateTime> lastUpdateTime = new AtomicReference<>();
+    private final SnapshotSlot slot = new SnapshotSlot();
+    private final AtomicLong versions = new AtomicLong(0);
     private final AtomicLong successfulLoads = new AtomicLong(0);
     private final AtomicLong failedLoads = new AtomicLong(0);
+    private final AtomicLong skippedUnchangedRefreshes = new AtomicLong(0);
+    private final AtomicLong reloadedRefreshes = new AtomicLong(0);
+    private final AtomicLong heapBudgetRejections = new AtomicLong(0);
+
+    private final SchedulerConfig schedulerConfig;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public S3DataCacheService(SchedulerConfig schedulerConfig) {
+        this.schedulerConfig = schedulerConfig;
+    }
     
     /**
-     * Updates the cached data with new JSON content
-     * @param data The new JSON data to cache
+     * Publishes a new snapshot, replacing the previous one as a whole.
+     * @param data The new snapshot to cache
+     */
+    public void updateCache(AdSnapshot data) {
+        updateCache(data, null);
+    }
+
+    /**
+     * Publishes a new base snapshot as the next version, in one swap. The previous base is closed,
+     * releasing its off-heap payload file, once the last lease on it is closed.
+     * @param data The new snapshot to cache
+     * @param version Version of the source the snapshot was loaded from, e.g. its ETag
      */
-    public void updateCache(JsonNode data) {
-        cachedData.set(data);
-        lastUpdateTime.set(LocalDateTime.now());
+    public synchronized void updateCache(AdSnapshot data, String version) {
+        SnapshotVersion previous = slot.get();
+        slot.replace(previous, new SnapshotVersion(versions.incrementAndGet(), data, version, version,
+                LocalDateTime.now(), data.estimatedHeapBytes(), heapBytesOf(previous), 0, null, slot.share(data)));
         successfulLoads.incrementAndGet();
+        reloadedRefreshes.incrementAndGet();
         logger.debug("Cache updated successfully. Total successful loads: {}", successfulLoads.get());
     }
+
+    /**
+     * Publishes a snapshot derived from the cached one by applying deltas, as the next version.
+     * The base is not released, since the derived snapshot shares its payload store.
+     * @param expected The snapshot the deltas were applied to
+     * @param data The derived snapshot
+     * @param deltaVersions Versions of the applied deltas in order, e.g. their keys and ETags
+     * @param elapsedMillis Time it took to fetch and apply the deltas
+     * @return false if the cache was replaced in the meantime and the derived snapshot was discarded
+     */
+    public synchronized boolean applyDeltas(AdSnapshot expected, AdSnapshot data, List<String> deltaVersions,
+                                            long elapsedMillis) {
+        SnapshotVersion previous = slot.get();
+        if (previous == null || previous.getData() != expected) {
+            logger.warn("Cache changed while deltas were applied, discarding {}", data);
+            return false;
+        }
+        String contentVersion = previous.getContentVersion() != null
+                ? previous.getContentVersion() + "\n" + String.join("\n", deltaVersions) : null;
+        slot.replace(previous, new SnapshotVersion(versions.incrementAndGet(), data, previous.getETag(),
+                contentVersion, LocalDateTime.now(), data.estimatedHeapBytes(), previous.getHeapBytes(), elapsedMillis, null,
+                previous.getBase()));
+        logger.debug("Deltas applied in {}ms. Deltas on current base: {}", elapsedMillis, data.appliedDeltaCount());
+        return true;
+    }
+
+    private static long heapBytesOf(SnapshotVersion version) {
+        return version != null ? version.getHeapBytes() : 0;
+    }
+
+    /**
+     * Pins the current version for the duration of a request, so everything the request reads comes
+     * from one snapshot and its payload store stays open until the lease is closed. Wait-free.
+     * @return A lease to close when done, or null if no data has been loaded yet
+     */
+    public SnapshotLease acquire() {
+        return slot.acquire();
+    }
+
+    /**
+     * Retrieves the current version without pinning it, for reading its metadata
+     * @return The current version, or null if no data has been loaded yet
+     */
+    public SnapshotVersion getCurrentVersion() {
+        return slot.get();
+    }
+
+    /**
+     * Estimates the heap held for the currently cached data: the snapshot and its pre-serialized
+     * response. This is what stays reachable while a new snapshot is loaded.
+     * @return Estimated bytes, 0 if no data is cached
+     */
+    public long estimateHeapInUse() {
+        SnapshotVersion version = slot.get();
+        if (version == null) {
+            return 0;
+        }
+        SerializedSnapshot serialized = version.getSerialized();
+        long serializedBytes = serialized == null ? 0
+                : Math.max(serialized.getJsonLength(), 0) + Math.max(serialized.getGzipLength(), 0);
+        return version.getHeapBytes() + serializedBytes;
+    }
+
+    /**
+     * Records a refresh that was abandoned because the new snapshot would not fit the heap budget
+     */
+    public void recordHeapBudgetRejection() {
+        heapBudgetRejections.incrementAndGet();
+    }
+
+    /**
+     * Records a successful refresh where S3 reported the object as unchanged,
+     * so the cached data was kept as is
+     */
+    public void recordUnchangedRefresh() {
+        successfulLoads.incrementAndGet();
+        skippedUnchangedRefreshes.incrementAndGet();
+        logger.debug("Unchanged refresh recorded. Total skipped refreshes: {}", skippedUnchangedRefreshes.get());
+    }
     
     /**
-     * Retrieves the currently cached data
-     * @return The cached JSON data, or null if no data has been loaded yet
+     * Retrieves the currently cached data without pinning it. Readers of payloads should
+     * {@link #acquire()} a lease instead, which keeps the payload store open.
+     * @return The cached snapshot, or null if no data has been loaded yet
      */
-    public JsonNode getCachedData() {
-        return cachedData.get();
+    public AdSnapshot getCachedData() {
+        SnapshotVersion version = slot.get();
+        return version != null ? version.getData() : null;
     }
     
+    /**
+     * Retrieves the serialized response of the currently cached snapshot, serializing it
+     * if the loader has not done so yet
+     * @return The serialized snapshot, or null if no data has been loaded yet
+     */
+    public SerializedSnapshot getSerializedData() {
+        try (SnapshotLease lease = acquire()) {
+            return lease != null ? getSerializedData(lease.getVersion()) : null;
+        }
+    }
+
+    /**
+     * Retrieves the serialized response of a version, serializing it if the loader has not done so yet.
+     * The caller keeps the version pinned, so its snapshot stays readable.
+     * @param version A version pinned by a lease
+     * @return The serialized snapshot of that version
+     */
+    public SerializedSnapshot getSerializedData(SnapshotVersion version) {
+        SerializedSnapshot serialized = version.getSerialized();
+        return serialized != null ? serialized : serialize(version);
+    }
+
+    /**
+     * Serializes the currently cached snapshot once, so requests for the whole dataset only copy
+     * bytes. Called by the loader right after publishing. If serialization fails (e.g. the dataset
+     * exceeds the maximum array size), the response falls back to per-request serialization.
+     * @return The serialized snapshot, or null if no data has been loaded yet
+     */
+    public SerializedSnapshot serializeCachedData() {
+        return getSerializedData();
+    }
+
+    private SerializedSnapshot serialize(SnapshotVersion version) {
+        AdSnapshot snapshot = version.getData();
+        long start = System.nanoTime();
+        SerializedSnapshot serialized;
+        try {
+            serialized = SerializedSnapshot.of(snapshot, version.getContentVersion(), schedulerConfig.isSerializeCachedData(),
+                    schedulerConfig.isGzipCachedData(), objectMapper);
+        } catch (Exception | OutOfMemoryError e) {
+            logger.warn("Failed to serialize {}, serving it without pre-serialized bytes: {}", snapshot, e.getMessage());
+            try {
+                serialized = SerializedSnapshot.of(snapshot, version.getContentVersion(), false, false, objectMapper);
+            } catch (Exception unexpected) {
+                throw new IllegalStateException("Failed to derive the snapshot ETag", unexpected);
+            }
+        }
+        logger.debug("Serialized {} as {} in {}ms", snapshot, serialized, (System.nanoTime() - start) / 1_000_000);
+
+        synchronized (this) {
+            SnapshotVersion current = slot.get();
+            if (current != null && current.getData() == snapshot && current.getSerialized() == null) {
+                slot.replace(current, current.withSerialized(serialized));
+            }
+        }
+        return serialized;
+    }
+
     /**
      * Gets the timestamp of the last successful cache update
      * @return LocalDateTime of last update, or null if never updated
      */
     public LocalDateTime getLastUpdateTime() {
-        return lastUpdateTime.get();
+        SnapshotVersion version = slot.get();
+        return version != null ? version.getLoadTime() : null;
     }
     
     /**
@@ -62,23 +227,35 @@ public class S3DataCacheService {
      * @return CacheStats object containing cache statistics
      */
     public CacheStats getStats() {
+        SnapshotVersion version = slot.get();
+        boolean hasData = version != null;
         return new CacheStats(
             successfulLoads.get(),
             failedLoads.get(),
-            lastUpdateTime.get(),
-            cachedData.get() != null
+            skippedUnchangedRefreshes.get(),
+            reloadedRefreshes.get(),
+            hasData ? version.getLoadTime() : null,
+            hasData,
+            hasData ? version.getETag() : null,
+            hasData ? version.getAppliedDeltas() : 0,
+            hasData ? version.getDeltaApplyMillis() : 0,
+            hasData ? version.getHeapBytes() : 0,
+            hasData ? version.getPreviousHeapBytes() : 0,
+            heapBudgetRejections.get(),
+            hasData ? version.getVersion() : 0,
+            slot.retiredBasesInUse(),
+            MappedPayloadStore.closedMappedBytes()
         );
     }
     
     /**
-     * Clears the cache
+     * Clears the cache. The cached snapshot is released once the last lease on it is closed.
      */
-    public void clearCache() {
-        cachedData.set(null);
-        lastUpdateTime.set(null);
+    public synchronized void clearCache() {
+        slot.replace(slot.get(), null);
         logger.info("Cache cleared");
     }
-    
+
     /**
      * Inner class to hold cache statistics
      */
@@ -88,7 +265,21 @@ public class S3DataCacheService {
     public static class CacheStats {
         private final long successfulLoads;
         private final long failedLoads;
+        private final long skippedUnchangedRefreshes;
+        private final long reloadedRefreshes;
         private final LocalDateTime lastUpdateTime;
         private final boolean hasData;
+        private final String baseVersion;
+        private final int appliedDeltas;
+        private final long lastDeltaApplyMillis;
+        // Estimated heap of the cached snapshot and of the one it replaced
+        private final long snapshotHeapBytes;
+        private final long previousSnapshotHeapBytes;
+        private final long heapBudgetRejections;
+        private final long version;
+        // Replaced snapshots not released yet because a reader still holds a lease on them
+        private final long retiredSnapshotsInUse;
+        // Off-heap payloads of released snapshots still mapped until they are garbage collected
+        private final long retiredMappedBytes;
     }
 }
@@ -0,0 +1,88 @@
+package com.example.s3jsonreader.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the executors that run blocking S3 fetches (dataset shards, ranged download parts).
+ *
+ * <p>With {@code spring.threads.virtual.enabled} on a Java 21+ runtime every fetch gets its own
+ * virtual thread, so a blocked S3 read costs no platform thread and no pool needs tuning; the
+ * number of requests actually sent is bounded by {@link S3ConcurrencyLimiter}. Otherwise the
+ * fetches run on fixed pools of daemon platform threads, as before. Virtual threads are created
+ * reflectively so the project still compiles for Java 17.
+ */
+@Component
+public class S3FetchExecutors {
+
+    private static final Logger logger = LoggerFactory.getLogger(S3FetchExecutors.class);
+
+    private final boolean virtualThreads;
+
+    @Autowired
+    public S3FetchExecutors(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreadsEnabled) {
+        this.virtualThreads = virtualThreadsEnabled && isVirtualThreadSupported();
+        if (virtualThreadsEnabled && !virtualThreads) {
+            logger.warn("Virtual threads requested but not available on Java {}, using platform thread pools",
+                    Runtime.version().feature());
+        }
+        logger.info("S3 fetches run on {} threads", virtualThreads ? "virtual" : "platform");
+    }
+
+    /**
+     * @return true if fetches run on virtual threads
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * @param namePrefix Prefix of the thread names, followed by a counter
+     * @param platformThreads Pool size when virtual threads are not used
+     */
+    public ExecutorService newExecutor(String namePrefix, int platformThreads) {
+        if (virtualThreads) {
+            try {
+                return newVirtualThreadPerTaskExecutor(namePrefix);
+            } catch (ReflectiveOperationException e) {
+                logger.warn("Failed to create a virtual thread executor, using a platform thread pool", e);
+            }
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, platformThreads), runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setName(namePrefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(namePrefix, 1).factory())
+    private static ExecutorService newVirtualThreadPerTaskExecutor(String namePrefix) throws ReflectiveOperationException {
+        Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+        Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+        builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 1L);
+        ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        Method newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+        return (ExecutorService) newExecutor.invoke(null, factory);
+    }
+
+    private static boolean isVirtualThreadSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
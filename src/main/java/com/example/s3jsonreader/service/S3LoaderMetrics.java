@@ -0,0 +1,176 @@
+package com.example.s3jsonreader.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timers and distributions of the loader: S3 time to first byte, bytes and throughput of every
+ * downloaded object, parse time, index build time and publish time. Everything is recorded once
+ * per object or per refresh, never per ad or per request, so it is always on.
+ * Histograms are published so percentiles can be aggregated across instances.
+ */
+@Component
+public class S3LoaderMetrics {
+
+    /** Objects parsed by the loader, used as the {@code object} tag of the parse timer */
+    public enum ObjectKind {
+        DATASET, SHARD, DELTA
+    }
+
+    private final Timer firstByte;
+    private final DistributionSummary downloadBytes;
+    private final DistributionSummary throughput;
+    private final Timer[] parse;
+    private final Timer indexBuild;
+    private final Timer publish;
+
+    public S3LoaderMetrics(MeterRegistry registry) {
+        this.firstByte = Timer.builder("s3.fetch.first.byte")
+                .description("Time from sending a GetObject to receiving the response headers")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(registry);
+        this.downloadBytes = DistributionSummary.builder("s3.fetch.bytes")
+                .description("Bytes downloaded per object, as stored (before decompression)")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(1024.0)
+                .maximumExpectedValue(64.0 * 1024 * 1024 * 1024)
+                .register(registry);
+        this.throughput = DistributionSummary.builder("s3.fetch.throughput")
+                .description("Download rate per object, from the first to the last byte")
+                .baseUnit("bytes.per.second")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(1024.0)
+                .maximumExpectedValue(10.0 * 1024 * 1024 * 1024)
+                .register(registry);
+        this.parse = new Timer[ObjectKind.values().length];
+        for (ObjectKind kind : ObjectKind.values()) {
+            parse[kind.ordinal()] = Timer.builder("snapshot.parse")
+                    .description("Time to parse an object into a snapshot builder or delta, including streamed download")
+                    .tag("object", kind.name().toLowerCase(Locale.ROOT))
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofMinutes(30))
+                    .register(registry);
+        }
+        this.indexBuild = Timer.builder("snapshot.index.build")
+                .description("Time to build the snapshot and its query index from the parsed ads")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofMinutes(10))
+                .register(registry);
+        this.publish = Timer.builder("snapshot.publish")
+                .description("Time to swap in a new snapshot, persist it locally and pre-serialize it")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofMinutes(10))
+                .register(registry);
+    }
+
+    public void recordFirstByte(long nanos) {
+        firstByte.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records a completed download
+     *
+     * @param nanos Time from the first to the last byte
+     */
+    public void recordDownload(long bytes, long nanos) {
+        downloadBytes.record(bytes);
+        if (nanos > 0) {
+            throughput.record(bytes * 1e9 / nanos);
+        }
+    }
+
+    public void recordParse(ObjectKind kind, long nanos) {
+        parse[kind.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordIndexBuild(long nanos) {
+        indexBuild.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordPublish(long nanos) {
+        publish.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Wraps an object body so the download is recorded when it is closed. Counting costs one
+     * addition per read call; the stream is usually read in buffer-sized chunks by the decoder.
+     */
+    public InputStream countDownload(InputStream body) {
+        return new CountingInputStream(body);
+    }
+
+    private final class CountingInputStream extends FilterInputStream {
+
+        private final long start = System.nanoTime();
+        private long count;
+        private boolean recorded;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = in.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public synchronized void mark(int readlimit) {
+            // Not supported, so re-read bytes are never counted twice
+        }
+
+        @Override
+        public synchronized void reset() throws IOException {
+            throw new IOException("mark/reset not supported");
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!recorded) {
+                recorded = true;
+                recordDownload(count, System.nanoTime() - start);
+            }
+            super.close();
+        }
+    }
+}
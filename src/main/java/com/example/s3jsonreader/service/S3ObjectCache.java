@@ -0,0 +1,231 @@
+package com.example.s3jsonreader.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of parsed S3 objects for on-demand reads by key, bounded by the estimated heap of the
+ * cached trees in bytes and evicted in least-recently-used order.
+ *
+ * <p>An entry is served as is for {@code ttl}; after that the next read revalidates it with a
+ * conditional GET, so an unchanged object costs a 304 instead of a download and parse. Concurrent
+ * misses for the same key share a single in-flight fetch. Cached trees are shared between callers
+ * and must not be modified.
+ */
+@Service
+public class S3ObjectCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(S3ObjectCache.class);
+
+    private final S3AsyncService s3AsyncService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${aws.s3.key-cache.max-weight-bytes:67108864}")
+    private long maxWeightBytes;
+
+    @Value("${aws.s3.key-cache.ttl:30s}")
+    private Duration ttl;
+
+    // Access-ordered, guarded by this
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalWeight;
+    private final Map<String, CompletableFuture<JsonNode>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong revalidations = new AtomicLong(0);
+    private final AtomicLong coalesced = new AtomicLong(0);
+    private final AtomicLong evictions = new AtomicLong(0);
+
+    public S3ObjectCache(S3AsyncService s3AsyncService) {
+        this.s3AsyncService = s3AsyncService;
+        this.objectMapper = new ObjectMapper();
+    }
+
+    /**
+     * Returns the parsed object for the key, from the cache if it is fresh, otherwise from S3.
+     *
+     * @param key The S3 key to read
+     * @return A future failing with {@link IllegalArgumentException} for a blank key and with
+     * {@link java.io.IOException} if S3 cannot be read
+     */
+    public CompletableFuture<JsonNode> get(String key) {
+        if (key == null || key.trim().isEmpty()) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("S3 key cannot be null or empty"));
+        }
+
+        long now = System.nanoTime();
+        Entry cached;
+        synchronized (this) {
+            cached = entries.get(key);
+        }
+        if (cached != null && now - cached.validatedAt < ttl.toNanos()) {
+            hits.incrementAndGet();
+            logger.debug("Key cache hit for {}", key);
+            return CompletableFuture.completedFuture(cached.json);
+        }
+
+        CompletableFuture<JsonNode> fetch = new CompletableFuture<>();
+        CompletableFuture<JsonNode> existing = inFlight.putIfAbsent(key, fetch);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            logger.debug("Joining in-flight fetch for {}", key);
+            return existing;
+        }
+
+        if (cached == null) {
+            misses.incrementAndGet();
+        }
+        fetch(key, cached).whenComplete((json, error) -> {
+            inFlight.remove(key, fetch);
+            if (error != null) {
+                fetch.completeExceptionally(error);
+            } else {
+                fetch.complete(json);
+            }
+        });
+        return fetch;
+    }
+
+    private CompletableFuture<JsonNode> fetch(String key, Entry stale) {
+        return s3AsyncService.readFromS3IfModifiedAsync(key, stale != null ? stale.eTag : null, objectMapper::readTree)
+                .thenApply(result -> {
+                    if (!result.isModified()) {
+                        revalidations.incrementAndGet();
+                        logger.debug("Revalidated cached {} (ETag: {})", key, stale.eTag);
+                        put(key, new Entry(stale.json, stale.eTag, stale.weight, System.nanoTime()));
+                        return stale.json;
+                    }
+                    if (stale != null) {
+                        misses.incrementAndGet();
+                    }
+                    put(key, new Entry(result.getData(), result.getETag(), estimateHeapBytes(result.getData()), System.nanoTime()));
+                    return result.getData();
+                });
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            totalWeight -= previous.weight;
+        }
+        if (entry.weight > maxWeightBytes) {
+            logger.debug("Not caching {} ({} bytes exceeds the cache size)", key, entry.weight);
+            return;
+        }
+
+        entries.put(key, entry);
+        totalWeight += entry.weight;
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (totalWeight > maxWeightBytes && eldest.hasNext()) {
+            Map.Entry<String, Entry> evicted = eldest.next();
+            eldest.remove();
+            totalWeight -= evicted.getValue().weight;
+            evictions.incrementAndGet();
+            logger.debug("Evicted {} from the key cache", evicted.getKey());
+        }
+    }
+
+    /**
+     * Estimates the heap retained by a parsed tree, which is what the cache holds. The S3 content
+     * length is no measure of it: compressed objects expand, and a tree takes several times the
+     * size of its JSON text. Walked iteratively, so deeply nested documents cannot overflow the stack.
+     */
+    static long estimateHeapBytes(JsonNode root) {
+        long bytes = 0;
+        Deque<JsonNode> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            JsonNode node = pending.pop();
+            if (node.isObject()) {
+                // Node, LinkedHashMap and its table, plus an entry and a key per field
+                bytes += 16 + 56 + 16 + 8L * node.size();
+                Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> field = fields.next();
+                    bytes += 40 + stringBytes(field.getKey());
+                    pending.push(field.getValue());
+                }
+            } else if (node.isArray()) {
+                // Node, ArrayList and its element array
+                bytes += 16 + 24 + 16 + 4L * node.size();
+                node.forEach(pending::push);
+            } else if (node.isTextual()) {
+                bytes += 16 + stringBytes(node.textValue());
+            } else if (node.isBinary()) {
+                bytes += 16 + 16 + node.asText().length() * 3L / 4;
+            } else if (!node.isBoolean() && !node.isNull() && !node.isMissingNode()) {
+                // Numbers; booleans and null are shared singletons
+                bytes += node.isBigInteger() || node.isBigDecimal() ? 64 : 24;
+            }
+        }
+        return bytes;
+    }
+
+    private static long stringBytes(String value) {
+        // String header plus its byte array, assuming one byte per char
+        return 24 + 16 + value.length();
+    }
+
+    /**
+     * Removes every cached object
+     */
+    public synchronized void clear() {
+        entries.clear();
+        totalWeight = 0;
+    }
+
+    public synchronized KeyCacheStats getStats() {
+        return new KeyCacheStats(hits.get(), misses.get(), revalidations.get(), coalesced.get(), evictions.get(),
+                entries.size(), totalWeight, maxWeightBytes);
+    }
+
+    private static final class Entry {
+        final JsonNode json;
+        final String eTag;
+        final long weight;
+        final long validatedAt;
+
+        Entry(JsonNode json, String eTag, long weight, long validatedAt) {
+            this.json = json;
+            this.eTag = eTag;
+            this.weight = weight;
+            this.validatedAt = validatedAt;
+        }
+    }
+
+    /**
+     * Counters of the key cache. A read of an expired entry counts as a revalidation if S3 reports
+     * the object unchanged and as a miss otherwise.
+     */
+    @Getter
+    @AllArgsConstructor
+    @ToString
+    public static class KeyCacheStats {
+        private final long hits;
+        private final long misses;
+        private final long revalidations;
+        private final long coalesced;
+        private final long evictions;
+        private final int entries;
+        private final long weightBytes;
+        private final long maxWeightBytes;
+    }
+}
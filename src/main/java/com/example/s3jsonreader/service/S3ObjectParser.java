@@ -0,0 +1,15 @@
+package com.example.s3jsonreader.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Converts the content stream of an S3 object into the representation the caller needs.
+ *
+ * @param <T> Type of the parsed object
+ */
+@FunctionalInterface
+public interface S3ObjectParser<T> {
+
+    T parse(InputStream content) throws IOException;
+}
@@ -0,0 +1,115 @@
+package com.example.s3jsonreader.service;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.ToString;
+import software.amazon.awssdk.http.Abortable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An open S3 object body to be copied to a client as is, with the metadata needed for the
+ * response headers. Holds an S3 request slot until closed, so it must always be closed.
+ */
+@Getter
+@ToString(exclude = {"content", "permit", "closed"})
+public class S3ObjectStream implements Closeable {
+
+    private static final int COPY_BUFFER_SIZE = 1 << 16;
+
+    private final String key;
+    private final boolean modified;
+    private final String eTag;
+    private final Instant lastModified;
+    private final String contentType;
+    // Null unless the object is stored compressed with a Content-Encoding
+    private final String contentEncoding;
+    // -1 if unknown or not modified
+    private final long contentLength;
+    private final InputStream content;
+    private final S3ConcurrencyLimiter.Permit permit;
+    @Getter(AccessLevel.NONE)
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    S3ObjectStream(String key, boolean modified, String eTag, Instant lastModified, String contentType,
+                   String contentEncoding, long contentLength, InputStream content,
+                   S3ConcurrencyLimiter.Permit permit) {
+        this.key = key;
+        this.modified = modified;
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+        this.contentType = contentType;
+        this.contentEncoding = contentEncoding;
+        this.contentLength = contentLength;
+        this.content = content;
+        this.permit = permit;
+    }
+
+    /**
+     * Copies the body to the output through a fixed-size buffer, whatever the object size.
+     *
+     * @param validator Checks the bytes as they pass, or null to copy them unchecked
+     * @return The number of bytes copied
+     * @throws IOException if the copy fails or the validator rejects the content; bytes before the
+     * invalid token have already been written
+     */
+    public long transferTo(OutputStream out, JsonStreamValidator validator) throws IOException {
+        if (content == null) {
+            return 0;
+        }
+        if (validator == null) {
+            return content.transferTo(out);
+        }
+
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        long copied = 0;
+        int read;
+        while ((read = content.read(buffer)) != -1) {
+            validator.feed(buffer, 0, read);
+            out.write(buffer, 0, read);
+            copied += read;
+        }
+        validator.finish();
+        return copied;
+    }
+
+    /**
+     * Closes the body and releases the request slot; later calls have no effect.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (content != null) {
+                content.close();
+            }
+        } finally {
+            permit.close();
+        }
+    }
+
+    /**
+     * Drops the connection instead of reading the rest of the body, for a response that was
+     * abandoned (the client went away or the async request timed out), and releases the request
+     * slot. Has no effect once the stream is closed.
+     */
+    public void abort() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (content instanceof Abortable) {
+                ((Abortable) content).abort();
+            }
+        } finally {
+            permit.close();
+        }
+    }
+}
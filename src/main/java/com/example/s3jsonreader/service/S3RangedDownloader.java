@@ -0,0 +1,147 @@
+package com.example.s3jsonreader.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Downloads a large S3 object with concurrent ranged GETs, each writing its part straight into
+ * its position of a temporary file. Every part is requested with If-Match on the object's ETag,
+ * so an object replaced mid-download fails the download instead of producing a mixed file.
+ */
+public class S3RangedDownloader {
+
+    private static final Logger logger = LoggerFactory.getLogger(S3RangedDownloader.class);
+
+    private static final int COPY_BUFFER_SIZE = 1 << 16;
+
+    private final S3Client s3Client;
+    private final S3ConcurrencyLimiter concurrencyLimiter;
+    private final ExecutorService executor;
+    private final long partSize;
+
+    /**
+     * @param concurrencyLimiter Bounds the number of concurrent GETs, together with the executor's size
+     * @param executor Runs the part downloads
+     * @param partSize Size of each ranged GET in bytes
+     */
+    public S3RangedDownloader(S3Client s3Client, S3ConcurrencyLimiter concurrencyLimiter, ExecutorService executor,
+                              long partSize) {
+        if (partSize <= 0) {
+            throw new IllegalArgumentException("Part size must be positive");
+        }
+        this.s3Client = s3Client;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.executor = executor;
+        this.partSize = partSize;
+    }
+
+    /**
+     * Downloads the object into a temporary file, which the caller must delete.
+     *
+     * @param eTag ETag of the object version to download, as returned by HeadObject
+     * @param contentLength Size of that version
+     * @return The temporary file holding the complete object
+     */
+    public Path download(String bucket, String key, String eTag, long contentLength) throws IOException {
+        int partCount = (int) ((contentLength + partSize - 1) / partSize);
+        logger.debug("Downloading s3://{}/{} ({} bytes) in {} parts of {} bytes",
+                bucket, key, contentLength, partCount, partSize);
+
+        Path temp = Files.createTempFile("s3-download-", ".part");
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            List<Future<?>> parts = new ArrayList<>(partCount);
+            for (int part = 0; part < partCount; part++) {
+                long first = part * partSize;
+                long last = Math.min(first + partSize, contentLength) - 1;
+                parts.add(executor.submit(() -> {
+                    downloadPart(bucket, key, eTag, first, last, channel);
+                    return null;
+                }));
+            }
+            awaitAll(parts);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        logger.info("Downloaded s3://{}/{} ({} bytes, {} parts) in {}ms ({} MB/s)", bucket, key, contentLength,
+                partCount, elapsedMillis, contentLength * 1000 / elapsedMillis / (1024 * 1024));
+        return temp;
+    }
+
+    private void downloadPart(String bucket, String key, String eTag, long first, long last,
+                              FileChannel channel) throws IOException {
+        GetObjectRequest request = GetObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .range("bytes=" + first + "-" + last)
+                .ifMatch(eTag)
+                .build();
+
+        long position = first;
+        try (S3ConcurrencyLimiter.Permit permit = concurrencyLimiter.acquire();
+             ResponseInputStream<GetObjectResponse> in = s3Client.getObject(request)) {
+            position = copy(in, channel, position);
+        }
+        if (position != last + 1) {
+            throw new IOException("Part " + first + "-" + last + " of s3://" + bucket + "/" + key
+                    + " ended after " + (position - first) + " bytes");
+        }
+    }
+
+    private static long copy(InputStream in, FileChannel channel, long position) throws IOException {
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+            while (chunk.hasRemaining()) {
+                position += channel.write(chunk, position);
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Waits for every part, cancelling the remaining ones as soon as one fails.
+     */
+    private static void awaitAll(List<Future<?>> parts) throws IOException {
+        try {
+            for (Future<?> part : parts) {
+                part.get();
+            }
+        } catch (InterruptedException e) {
+            parts.forEach(part -> part.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while downloading parts", e);
+        } catch (ExecutionException e) {
+            parts.forEach(part -> part.cancel(true));
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Part download failed", cause);
+        }
+    }
+}
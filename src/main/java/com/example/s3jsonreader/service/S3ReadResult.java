@@ -0,0 +1,40 @@
+package com.example.s3jsonreader.service;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Instant;
+
+/**
+ * Result of a conditional read from S3. Either carries the freshly parsed
+ * object together with its version markers, or signals that the object has
+ * not changed since the version the caller already holds.
+ *
+ * @param <T> Type of the parsed object
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@ToString(exclude = "data")
+public class S3ReadResult<T> {
+
+    private final T data;
+    private final String eTag;
+    private final Instant lastModified;
+    private final boolean modified;
+    // Size of the object in bytes, or -1 if unknown
+    private final long contentLength;
+
+    public static <T> S3ReadResult<T> modified(T data, String eTag, Instant lastModified) {
+        return modified(data, eTag, lastModified, -1);
+    }
+
+    public static <T> S3ReadResult<T> modified(T data, String eTag, Instant lastModified, long contentLength) {
+        return new S3ReadResult<>(data, eTag, lastModified, true, contentLength);
+    }
+
+    public static <T> S3ReadResult<T> notModified(String eTag, Instant lastModified) {
+        return new S3ReadResult<>(null, eTag, lastModified, false, -1);
+    }
+}
@@ -1,17 +1,43 @@
 package com.example.s3jsonreader.service;
 
 import com.example.s3jsonreader.config.SchedulerConfig;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.example.s3jsonreader.snapshot.AdDelta;
+import com.example.s3jsonreader.snapshot.AdSnapshot;
+import com.example.s3jsonreader.snapshot.AdSnapshotBuilder;
+import com.example.s3jsonreader.snapshot.AdSnapshotFile;
+import com.example.s3jsonreader.snapshot.AdSnapshotReader;
+import com.example.s3jsonreader.snapshot.HeapBudgetExceededException;
+import com.example.s3jsonreader.snapshot.HeapPayloadStore;
+import com.example.s3jsonreader.snapshot.MappedPayloadStore;
+import com.example.s3jsonreader.snapshot.SnapshotHeapBudget;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.s3.model.S3Object;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Service
 public class S3ScheduledLoader {
@@ -21,14 +47,34 @@ public class S3ScheduledLoader {
     private final S3Service s3Service;
     private final S3DataCacheService cacheService;
     private final SchedulerConfig schedulerConfig;
+    private final AdSnapshotReader snapshotReader;
+    private final S3FetchExecutors fetchExecutors;
+    private final S3LoaderMetrics loaderMetrics;
     private ScheduledExecutorService scheduledExecutorService;
+    private ExecutorService shardExecutorService;
+
+    // Version markers of the object currently held in the cache, used for conditional GETs
+    private volatile String lastETag;
+    private volatile Instant lastModified;
+    // Key of the last delta applied on top of the cached base, null right after a base load
+    private volatile String lastDeltaKey;
+    // Starts as configured; switches to OFF_HEAP for good if a refresh exceeds the heap budget
+    private volatile SchedulerConfig.PayloadStorage payloadStorage;
+    // One refresh at a time, scheduled or manual, so two loads never build side by side
+    private final ReentrantLock refreshLock = new ReentrantLock();
 
     public S3ScheduledLoader(S3Service s3Service,
                              S3DataCacheService cacheService,
-                             SchedulerConfig schedulerConfig) {
+                             SchedulerConfig schedulerConfig,
+                             S3FetchExecutors fetchExecutors,
+                             S3LoaderMetrics loaderMetrics) {
         this.s3Service = s3Service;
         this.cacheService = cacheService;
         this.schedulerConfig = schedulerConfig;
+        this.snapshotReader = new AdSnapshotReader(new ObjectMapper());
+        this.fetchExecutors = fetchExecutors;
+        this.loaderMetrics = loaderMetrics;
+        this.payloadStorage = schedulerConfig.getPayloadStorage();
     }
 
     /**
@@ -42,10 +88,14 @@ public class S3ScheduledLoader {
         }
 
         logger.info("Initializing S3 Scheduled Loader with configuration: " +
-                        "initialDelay={}ms, fixedDelay={}ms, threadPoolSize={}",
+                        "initialDelay={}ms, fixedDelay={}ms, threadPoolSize={}, payloadStorage={}",
                 schedulerConfig.getInitialDelay(),
                 schedulerConfig.getFixedDelay(),
-                schedulerConfig.getThreadPoolSize());
+                schedulerConfig.getThreadPoolSize(),
+                schedulerConfig.getPayloadStorage());
+
+        // Serve the last persisted snapshot until the first S3 refresh completes
+        restoreLocalSnapshot();
 
         // Create the scheduled executor service
         scheduledExecutorService = Executors.newScheduledThreadPool(
@@ -80,13 +130,9 @@ public class S3ScheduledLoader {
         logger.debug("Starting scheduled S3 data load");
 
         try {
-            // Load data from S3
-            JsonNode jsonData = s3Service.readJsonFromS3();
+            refreshCache(false);
 
-            // Update the cache
-            cacheService.updateCache(jsonData);
-
-            logger.info("Successfully loaded and cached data from S3. Cache stats: {}",
+            logger.info("Scheduled S3 refresh completed. Cache stats: {}",
                     cacheService.getStats());
 
         } catch (IOException e) {
@@ -99,7 +145,8 @@ public class S3ScheduledLoader {
     }
 
     /**
-     * Manually trigger a data load (useful for testing or on-demand refresh)
+     * Manually trigger a data load (useful for testing or on-demand refresh).
+     * Always downloads the object, regardless of its ETag.
      *
      * @return true if load was successful, false otherwise
      */
@@ -107,8 +154,7 @@ public class S3ScheduledLoader {
         logger.info("Manual S3 data load triggered");
 
         try {
-            JsonNode jsonData = s3Service.readJsonFromS3();
-            cacheService.updateCache(jsonData);
+            refreshCache(true);
             logger.info("Manual load completed successfully");
             return true;
         } catch (Exception e) {
@@ -118,11 +164,403 @@ public class S3ScheduledLoader {
         }
     }
 
+    /**
+     * Reads the object from S3 into a typed snapshot and publishes it if it changed.
+     * The remembered ETag is only sent while the cache actually holds the matching data,
+     * so a cleared cache is always repopulated on the next refresh. Refreshes are serialized: one
+     * started while another runs waits for it, so the version markers stay consistent and the heap
+     * budget of each load is not shared with a concurrent one.
+     *
+     * @param force true to download unconditionally
+     */
+    private void refreshCache(boolean force) throws IOException {
+        refreshLock.lock();
+        try {
+            refreshBaseWithinHeapBudget(force);
+
+            if (s3Service.isDeltaEnabled()) {
+                applyNewDeltas();
+            }
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Loads the base snapshot within {@code scheduler.s3.heap-budget-bytes}. The cached data stays
+     * reachable until the new snapshot replaces it, so the budget covers both. A load over the budget
+     * is abandoned, while parsing if possible, and the cached data keeps being served. With payloads
+     * on the heap and the {@code OFF_HEAP} budget action, the load is retried once with payloads in a
+     * memory-mapped file, and later loads keep them there.
+     */
+    private void refreshBaseWithinHeapBudget(boolean force) throws IOException {
+        HeapBudgetExceededException exceeded;
+        try {
+            refreshBase(force);
+            return;
+        } catch (HeapBudgetExceededException e) {
+            exceeded = e;
+        }
+
+        if (payloadStorage == SchedulerConfig.PayloadStorage.HEAP
+                && schedulerConfig.getHeapBudgetAction() == SchedulerConfig.HeapBudgetAction.OFF_HEAP) {
+            logger.warn("{}; switching payload storage to OFF_HEAP and retrying", exceeded.getMessage());
+            payloadStorage = SchedulerConfig.PayloadStorage.OFF_HEAP;
+            try {
+                refreshBase(force);
+                return;
+            } catch (HeapBudgetExceededException e) {
+                exceeded = e;
+            }
+        }
+
+        cacheService.recordHeapBudgetRejection();
+        logger.error("Refresh rejected, keeping the cached data: {}", exceeded.getMessage());
+        throw exceeded;
+    }
+
+    private void refreshBase(boolean force) throws IOException {
+        if (s3Service.isShardedDataset()) {
+            refreshShardedCache(force);
+        } else {
+            refreshSingleObjectCache(force);
+        }
+    }
+
+    private void refreshSingleObjectCache(boolean force) throws IOException {
+        boolean conditional = !force && cacheService.getCachedData() != null;
+        SnapshotHeapBudget budget = heapBudget();
+        S3ReadResult<AdSnapshot> result = s3Service.readFromS3IfModified(
+                conditional ? lastETag : null,
+                conditional ? lastModified : null,
+                content -> {
+                    AdSnapshotBuilder builder = newSnapshotBuilder(budget);
+                    try {
+                        parseInto(content, builder, S3LoaderMetrics.ObjectKind.DATASET);
+                    } catch (IOException | RuntimeException e) {
+                        builder.abort();
+                        throw e;
+                    }
+                    return buildSnapshot(builder, budget);
+                });
+
+        if (!result.isModified()) {
+            logger.debug("S3 object unchanged (ETag: {}), keeping cached data", result.getETag());
+            cacheService.recordUnchangedRefresh();
+            return;
+        }
+
+        publish(result.getData(), result.getETag(), result.getLastModified());
+    }
+
+    /**
+     * Loads a dataset split into several objects under a prefix. The listing is fingerprinted from
+     * every shard's key and ETag, so an unchanged dataset costs one LIST call. Otherwise every shard
+     * is downloaded and parsed on the shard pool into its own builder, and the builders are merged in
+     * key order into a single snapshot that is published in one step; a failed shard fails the refresh
+     * and the previous snapshot stays in place.
+     *
+     * @param force true to reload even if the listing is unchanged
+     */
+    private void refreshShardedCache(boolean force) throws IOException {
+        List<S3Object> shards = s3Service.listDatasetShards();
+        if (shards.isEmpty()) {
+            throw new IOException("No dataset shards found under the configured prefix");
+        }
+
+        String fingerprint = shardFingerprint(shards);
+        if (!force && cacheService.getCachedData() != null && fingerprint.equals(lastETag)) {
+            logger.debug("Dataset shards unchanged (fingerprint: {}), keeping cached data", fingerprint);
+            cacheService.recordUnchangedRefresh();
+            return;
+        }
+
+        long start = System.nanoTime();
+        SnapshotHeapBudget budget = heapBudget();
+        AdSnapshotBuilder builder = newSnapshotBuilder(budget);
+        List<Future<AdSnapshotBuilder>> parts = new ArrayList<>(shards.size());
+        try {
+            ExecutorService executor = shardExecutor();
+            for (S3Object shard : shards) {
+                parts.add(executor.submit(() -> s3Service.readFromS3IfModified(shard.key(), null, null, content -> {
+                    AdSnapshotBuilder shardBuilder = builder.newShardBuilder();
+                    parseInto(content, shardBuilder, S3LoaderMetrics.ObjectKind.SHARD);
+                    return shardBuilder;
+                }).getData()));
+            }
+            for (Future<AdSnapshotBuilder> part : parts) {
+                builder.merge(part.get());
+            }
+        } catch (InterruptedException e) {
+            parts.forEach(part -> part.cancel(true));
+            builder.abort();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading dataset shards", e);
+        } catch (ExecutionException e) {
+            parts.forEach(part -> part.cancel(true));
+            builder.abort();
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to load dataset shard", cause);
+        } catch (RuntimeException e) {
+            parts.forEach(part -> part.cancel(true));
+            builder.abort();
+            throw e;
+        }
+
+        AdSnapshot snapshot = buildSnapshot(builder, budget);
+        logger.info("Loaded {} dataset shards into {} in {}ms", shards.size(), snapshot,
+                (System.nanoTime() - start) / 1_000_000);
+
+        Instant newestShard = shards.stream()
+                .map(S3Object::lastModified)
+                .filter(Objects::nonNull)
+                .max(Instant::compareTo)
+                .orElse(null);
+        publish(snapshot, fingerprint, newestShard);
+    }
+
+    private void parseInto(InputStream content, AdSnapshotBuilder builder, S3LoaderMetrics.ObjectKind kind)
+            throws IOException {
+        long start = System.nanoTime();
+        snapshotReader.readInto(content, builder);
+        loaderMetrics.recordParse(kind, System.nanoTime() - start);
+    }
+
+    /**
+     * Builds the snapshot and checks its full heap estimate against the budget before it is published
+     */
+    private AdSnapshot buildSnapshot(AdSnapshotBuilder builder, SnapshotHeapBudget budget) throws IOException {
+        long start = System.nanoTime();
+        AdSnapshot snapshot = builder.build();
+        loaderMetrics.recordIndexBuild(System.nanoTime() - start);
+        try {
+            budget.check(snapshot, cacheService.estimateHeapInUse());
+        } catch (HeapBudgetExceededException e) {
+            snapshot.close();
+            throw e;
+        }
+        return snapshot;
+    }
+
+    private SnapshotHeapBudget heapBudget() {
+        long limit = schedulerConfig.getHeapBudgetBytes();
+        return limit > 0 ? new SnapshotHeapBudget(limit, cacheService.estimateHeapInUse()) : SnapshotHeapBudget.UNLIMITED;
+    }
+
+    private void publish(AdSnapshot snapshot, String eTag, Instant modified) {
+        long start = System.nanoTime();
+        cacheService.updateCache(snapshot, eTag);
+        lastETag = eTag;
+        lastModified = modified;
+        lastDeltaKey = null;
+        logger.debug("Cache reloaded with {} from S3 version with ETag: {}, Last Modified: {}",
+                snapshot, lastETag, lastModified);
+
+        // Pinned so a concurrent publish or clear cannot release the payloads while they are written
+        try (SnapshotLease lease = cacheService.acquire()) {
+            if (lease != null && lease.getData() == snapshot) {
+                persistLocalSnapshot(snapshot, eTag, modified);
+                cacheService.getSerializedData(lease.getVersion());
+            }
+        }
+        loaderMetrics.recordPublish(System.nanoTime() - start);
+    }
+
+    /**
+     * Applies the deltas published since the cached base was loaded, on top of the cached snapshot.
+     * A delta is new if its key sorts after the last applied one and it was written after the base;
+     * deltas are applied in key order and published together in one swap. If a delta cannot be read,
+     * the ones before it are still published and the rest are retried on the next refresh.
+     * The cached version stays pinned by a lease while the deltas are applied on top of it.
+     * Upserts are read into the configured payload storage within {@code scheduler.s3.heap-budget-bytes},
+     * and the result is checked against the budget too; if it does not fit, the cached version is kept.
+     */
+    private void applyNewDeltas() throws IOException {
+        try (SnapshotLease lease = cacheService.acquire()) {
+            if (lease != null) {
+                applyNewDeltas(lease.getData());
+            }
+        }
+    }
+
+    private void applyNewDeltas(AdSnapshot base) throws IOException {
+
+        long start = System.nanoTime();
+        SnapshotHeapBudget budget = heapBudget();
+        String appliedKey = lastDeltaKey;
+        Instant baseModified = lastModified;
+        AdSnapshot snapshot = base;
+        List<String> appliedVersions = new ArrayList<>();
+        int applied = 0;
+        IOException failure = null;
+        for (S3Object object : s3Service.listDeltas()) {
+            if ((appliedKey != null && object.key().compareTo(appliedKey) <= 0)
+                    || (baseModified != null && object.lastModified() != null && !object.lastModified().isAfter(baseModified))) {
+                continue;
+            }
+            try {
+                AdDelta delta = s3Service.readFromS3IfModified(object.key(), null, null, content -> {
+                    long parseStart = System.nanoTime();
+                    AdDelta parsed = snapshotReader.readDelta(content, newSnapshotBuilder(budget));
+                    loaderMetrics.recordParse(S3LoaderMetrics.ObjectKind.DELTA, System.nanoTime() - parseStart);
+                    return parsed;
+                }).getData();
+                try {
+                    snapshot = snapshot.apply(delta);
+                } finally {
+                    // The overlay copies the upserted payloads, so their store is not needed anymore
+                    delta.getUpserts().close();
+                }
+                appliedKey = object.key();
+                appliedVersions.add(object.key() + "@" + object.eTag());
+                applied++;
+                logger.debug("Applied delta {} with {} changes", object.key(), delta.changeCount());
+            } catch (HeapBudgetExceededException e) {
+                cacheService.recordHeapBudgetRejection();
+                failure = e;
+                break;
+            } catch (IOException e) {
+                failure = e;
+                break;
+            }
+        }
+
+        if (applied > 0) {
+            try {
+                // The base is shared with the cached version, so only the overlays add to the heap in use
+                budget.check(snapshot, cacheService.estimateHeapInUse() - snapshot.baseHeapBytes());
+            } catch (HeapBudgetExceededException e) {
+                cacheService.recordHeapBudgetRejection();
+                logger.error("Deltas rejected, keeping the cached data: {}", e.getMessage());
+                throw e;
+            }
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            if (cacheService.applyDeltas(base, snapshot, appliedVersions, elapsedMillis)) {
+                lastDeltaKey = appliedKey;
+                cacheService.serializeCachedData();
+                logger.info("Applied {} deltas in {}ms, cache now holds {}", applied, elapsedMillis, snapshot);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Combines the key and ETag of every shard into one version marker for the whole dataset
+     */
+    static String shardFingerprint(List<S3Object> shards) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (S3Object shard : shards) {
+                digest.update(shard.key().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(String.valueOf(shard.eTag()).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+            return "shards-" + shards.size() + "-" + HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Executor that downloads and parses shards: a pool sized by {@code scheduler.s3.thread-pool-size},
+     * or a virtual thread per shard when virtual threads are enabled.
+     * Created on first use so manual loads also work while the scheduler is disabled.
+     */
+    private synchronized ExecutorService shardExecutor() {
+        if (shardExecutorService == null) {
+            shardExecutorService = fetchExecutors.newExecutor("s3-shard-", schedulerConfig.getThreadPoolSize());
+        }
+        return shardExecutorService;
+    }
+
+    /**
+     * Restores the snapshot persisted by a previous run, together with its source ETag,
+     * so the first scheduled refresh is a conditional GET that usually ends in a 304.
+     * A missing or corrupt file only means a cold start.
+     */
+    private void restoreLocalSnapshot() {
+        Path path = localSnapshotPath();
+        if (path == null || !Files.exists(path)) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            AdSnapshotFile.Restored restored = AdSnapshotFile.read(path,
+                    payloadStorage == SchedulerConfig.PayloadStorage.OFF_HEAP);
+            try {
+                heapBudget().check(restored.getSnapshot(), 0);
+            } catch (HeapBudgetExceededException e) {
+                restored.getSnapshot().close();
+                logger.warn("Not restoring local snapshot from {}, waiting for S3: {}", path, e.getMessage());
+                return;
+            }
+            cacheService.updateCache(restored.getSnapshot(), restored.getETag());
+            cacheService.serializeCachedData();
+            lastETag = restored.getETag();
+            lastModified = restored.getLastModified();
+            logger.info("Warm-started cache with {} from {} in {}ms (source ETag: {})",
+                    restored.getSnapshot(), path, (System.nanoTime() - start) / 1_000_000, lastETag);
+        } catch (Exception e) {
+            logger.warn("Failed to restore local snapshot from {}, waiting for S3: {}", path, e.getMessage(), e);
+        }
+    }
+
+    private void persistLocalSnapshot(AdSnapshot snapshot, String eTag, Instant modified) {
+        Path path = localSnapshotPath();
+        if (path == null) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            AdSnapshotFile.write(snapshot, eTag, modified, path);
+            logger.debug("Persisted snapshot to {} in {}ms", path, (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            logger.warn("Failed to persist snapshot to {}: {}", path, e.getMessage(), e);
+        }
+    }
+
+    private Path localSnapshotPath() {
+        String configured = schedulerConfig.getLocalSnapshotPath();
+        return configured == null || configured.isBlank() ? null : Paths.get(configured);
+    }
+
+    /**
+     * Creates a builder whose payloads go to the storage selected by {@code scheduler.s3.payload-storage},
+     * or off the heap after a heap budget fallback
+     */
+    private AdSnapshotBuilder newSnapshotBuilder(SnapshotHeapBudget budget) throws IOException {
+        if (payloadStorage == SchedulerConfig.PayloadStorage.OFF_HEAP) {
+            return new AdSnapshotBuilder(MappedPayloadStore.writer(Paths.get(schedulerConfig.getOffHeapDirectory())), budget);
+        }
+        return new AdSnapshotBuilder(HeapPayloadStore.writer(), budget);
+    }
+
+    /**
+     * @return Where payloads of newly loaded snapshots are kept
+     */
+    public SchedulerConfig.PayloadStorage getPayloadStorage() {
+        return payloadStorage;
+    }
+
     /**
      * Gracefully shuts down the scheduled executor service
      */
     @PreDestroy
     public void shutdown() {
+        synchronized (this) {
+            if (shardExecutorService != null) {
+                shardExecutorService.shutdownNow();
+            }
+        }
+
         if (scheduledExecutorService != null && !scheduledExecutorService.isShutdown()) {
             logger.info("Shutting down S3 Scheduled Loader");
 
@@ -2,6 +2,7 @@ package com.example.s3jsonreader.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -10,16 +11,36 @@ import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
 import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 @Service
 public class S3Service {
 
     private static final Logger logger = LoggerFactory.getLogger(S3Service.class);
-    
+
+    private static final int HTTP_NOT_MODIFIED = 304;
+
     private final S3Client s3Client;
+    private final S3ConcurrencyLimiter concurrencyLimiter;
+    private final S3FetchExecutors fetchExecutors;
+    private final S3LoaderMetrics loaderMetrics;
     private final ObjectMapper objectMapper;
 
     @Value("${aws.s3.bucket-name}")
@@ -28,8 +49,37 @@ public class S3Service {
     @Value("${aws.s3.json-file-key}")
     private String jsonFileKey;
 
-    public S3Service(S3Client s3Client) {
+    @Value("${aws.s3.json-file-prefix:}")
+    private String jsonFilePrefix;
+
+    @Value("${aws.s3.delta-prefix:}")
+    private String deltaPrefix;
+
+    @Value("${aws.s3.multipart-download.enabled:false}")
+    private boolean multipartDownloadEnabled;
+
+    @Value("${aws.s3.multipart-download.part-size:67108864}")
+    private long multipartPartSize;
+
+    @Value("${aws.s3.multipart-download.parallelism:8}")
+    private int multipartParallelism;
+
+    @Value("${aws.s3.passthrough.max-concurrent-requests:8}")
+    private int passthroughMaxConcurrentRequests;
+
+    @Value("${aws.s3.passthrough.acquire-timeout:5s}")
+    private Duration passthroughAcquireTimeout;
+
+    private volatile S3RangedDownloader rangedDownloader;
+    private volatile S3ConcurrencyLimiter passthroughLimiter;
+    private ExecutorService rangedDownloadExecutor;
+
+    public S3Service(S3Client s3Client, S3ConcurrencyLimiter concurrencyLimiter, S3FetchExecutors fetchExecutors,
+                     S3LoaderMetrics loaderMetrics) {
         this.s3Client = s3Client;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.fetchExecutors = fetchExecutors;
+        this.loaderMetrics = loaderMetrics;
         this.objectMapper = new ObjectMapper();
         logger.info("S3Service initialized with S3Client");
     }
@@ -37,7 +87,7 @@ public class S3Service {
     public JsonNode readJsonFromS3() throws IOException {
         logger.info("Attempting to read JSON from S3 - Bucket: {}, Key: {}", bucketName, jsonFileKey);
         
-        try {
+        try (S3ConcurrencyLimiter.Permit permit = concurrencyLimiter.acquire()) {
             GetObjectRequest getObjectRequest = GetObjectRequest.builder()
                     .bucket(bucketName)
                     .key(jsonFileKey)
@@ -50,7 +100,10 @@ public class S3Service {
             logger.debug("S3 Response - Content Type: {}, Content Length: {}, ETag: {}", 
                     response.contentType(), response.contentLength(), response.eTag());
             
-            JsonNode jsonNode = objectMapper.readTree(s3Object);
+            JsonNode jsonNode;
+            try (InputStream content = S3ContentDecoder.decode(s3Object, jsonFileKey, response.contentEncoding())) {
+                jsonNode = objectMapper.readTree(content);
+            }
             logger.info("Successfully read and parsed JSON from S3 - Bucket: {}, Key: {}", bucketName, jsonFileKey);
             
             return jsonNode;
@@ -71,6 +124,314 @@ public class S3Service {
         }
     }
 
+    /**
+     * Reads the configured JSON file only if it changed since the given version.
+     * Sends If-None-Match when an ETag is known (falling back to If-Modified-Since),
+     * so an unchanged object costs a single 304 round trip instead of a full download and parse.
+     *
+     * @param previousETag ETag of the version the caller already holds, or null
+     * @param previousLastModified Last-Modified of the version the caller already holds, or null
+     * @param parser Converts the object content into the returned representation
+     * @return the parsed object, or a not-modified result carrying the previous version markers
+     */
+    public <T> S3ReadResult<T> readFromS3IfModified(String previousETag, Instant previousLastModified,
+                                                    S3ObjectParser<T> parser) throws IOException {
+        return readFromS3IfModified(jsonFileKey, previousETag, previousLastModified, parser);
+    }
+
+    /**
+     * Reads the given key only if it changed since the given version.
+     *
+     * @see #readFromS3IfModified(String, Instant, S3ObjectParser)
+     */
+    public <T> S3ReadResult<T> readFromS3IfModified(String key, String previousETag, Instant previousLastModified,
+                                                    S3ObjectParser<T> parser) throws IOException {
+        logger.info("Attempting conditional read of JSON from S3 - Bucket: {}, Key: {}, ETag: {}",
+                bucketName, key, previousETag);
+
+        try {
+            if (multipartDownloadEnabled) {
+                S3ReadResult<T> result = readLargeObjectIfModified(key, previousETag, previousLastModified, parser);
+                if (result != null) {
+                    return result;
+                }
+            }
+
+            GetObjectRequest.Builder requestBuilder = GetObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(key);
+            if (previousETag != null) {
+                requestBuilder.ifNoneMatch(previousETag);
+            } else if (previousLastModified != null) {
+                requestBuilder.ifModifiedSince(previousLastModified);
+            }
+
+            logger.debug("Sending conditional GetObject request to S3");
+            try (S3ConcurrencyLimiter.Permit permit = concurrencyLimiter.acquire();
+                 ResponseInputStream<GetObjectResponse> s3Object = getObjectTimed(requestBuilder.build())) {
+                GetObjectResponse response = s3Object.response();
+                logger.debug("S3 Response - Content Type: {}, Content Length: {}, ETag: {}, Last Modified: {}",
+                        response.contentType(), response.contentLength(), response.eTag(), response.lastModified());
+
+                T data;
+                try (InputStream content = S3ContentDecoder.decode(loaderMetrics.countDownload(s3Object), key,
+                        response.contentEncoding())) {
+                    data = parser.parse(content);
+                }
+                logger.info("Successfully read and parsed changed JSON from S3 - Bucket: {}, Key: {}, ETag: {}",
+                        bucketName, key, response.eTag());
+
+                return S3ReadResult.modified(data, response.eTag(), response.lastModified());
+            }
+
+        } catch (S3Exception e) {
+            if (e.statusCode() == HTTP_NOT_MODIFIED) {
+                logger.info("S3 object unchanged since last read - Bucket: {}, Key: {}, ETag: {}",
+                        bucketName, key, previousETag);
+                return S3ReadResult.notModified(previousETag, previousLastModified);
+            }
+            logger.error("S3 Exception occurred while reading from bucket: {}, key: {} - Error Code: {}, Status Code: {}, Message: {}",
+                    bucketName, key, e.awsErrorDetails().errorCode(),
+                    e.statusCode(), e.awsErrorDetails().errorMessage(), e);
+            throw new IOException("Failed to read JSON file from S3: " + e.awsErrorDetails().errorMessage(), e);
+        } catch (IOException e) {
+            logger.error("IOException occurred while parsing JSON from S3 - Bucket: {}, Key: {}",
+                    bucketName, key, e);
+            throw e;
+        } catch (Exception e) {
+            logger.error("Unexpected error occurred while reading from S3 - Bucket: {}, Key: {}",
+                    bucketName, key, e);
+            throw new IOException("Unexpected error reading from S3", e);
+        }
+    }
+
+    /**
+     * Checks the object with a conditional HeadObject and, if it changed and is larger than one part,
+     * downloads it with parallel ranged GETs into a temporary file that is then handed to the parser.
+     *
+     * @return the result, or null if the object is small enough for a single GET
+     */
+    private <T> S3ReadResult<T> readLargeObjectIfModified(String key, String previousETag, Instant previousLastModified,
+                                                          S3ObjectParser<T> parser) throws IOException {
+        HeadObjectRequest.Builder headRequest = HeadObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key);
+        if (previousETag != null) {
+            headRequest.ifNoneMatch(previousETag);
+        } else if (previousLastModified != null) {
+            headRequest.ifModifiedSince(previousLastModified);
+        }
+
+        HeadObjectResponse head;
+        try (S3ConcurrencyLimiter.Permit permit = concurrencyLimiter.acquire()) {
+            head = s3Client.headObject(headRequest.build());
+        }
+        if (head.contentLength() == null || head.contentLength() <= multipartPartSize) {
+            logger.debug("Object of {} bytes fits in one part, using a single GET", head.contentLength());
+            return null;
+        }
+
+        long downloadStart = System.nanoTime();
+        Path downloaded = rangedDownloader().download(bucketName, key, head.eTag(), head.contentLength());
+        loaderMetrics.recordDownload(head.contentLength(), System.nanoTime() - downloadStart);
+        try (InputStream content = S3ContentDecoder.decode(
+                new BufferedInputStream(Files.newInputStream(downloaded), 1 << 16), key, head.contentEncoding())) {
+            T data = parser.parse(content);
+            logger.info("Successfully read and parsed changed JSON from S3 with ranged GETs - Bucket: {}, Key: {}, ETag: {}",
+                    bucketName, key, head.eTag());
+            return S3ReadResult.modified(data, head.eTag(), head.lastModified());
+        } finally {
+            Files.deleteIfExists(downloaded);
+        }
+    }
+
+    /**
+     * Sends a GetObject and records the time until the response headers arrive, which is when the
+     * SDK returns the body stream. A 304 or error response is not recorded.
+     */
+    private ResponseInputStream<GetObjectResponse> getObjectTimed(GetObjectRequest request) {
+        long start = System.nanoTime();
+        ResponseInputStream<GetObjectResponse> s3Object = s3Client.getObject(request);
+        loaderMetrics.recordFirstByte(System.nanoTime() - start);
+        return s3Object;
+    }
+
+    /**
+     * @return true if the dataset is split into several objects under {@code aws.s3.json-file-prefix}
+     * instead of the single {@code aws.s3.json-file-key}
+     */
+    public boolean isShardedDataset() {
+        return jsonFilePrefix != null && !jsonFilePrefix.isBlank();
+    }
+
+    /**
+     * Lists the objects of the sharded dataset, following continuation tokens.
+     * Folder placeholders (keys ending in "/") are skipped.
+     *
+     * @return The shards sorted by key, i.e. in the order they are merged
+     */
+    public List<S3Object> listDatasetShards() throws IOException {
+        return listObjects(jsonFilePrefix);
+    }
+
+    /**
+     * @return true if delta objects are published under {@code aws.s3.delta-prefix}
+     */
+    public boolean isDeltaEnabled() {
+        return deltaPrefix != null && !deltaPrefix.isBlank();
+    }
+
+    /**
+     * Lists the delta objects, following continuation tokens.
+     *
+     * @return The deltas sorted by key, i.e. in the order they are applied
+     */
+    public List<S3Object> listDeltas() throws IOException {
+        return listObjects(deltaPrefix);
+    }
+
+    private List<S3Object> listObjects(String prefix) throws IOException {
+        logger.info("Listing objects in S3 - Bucket: {}, Prefix: {}", bucketName, prefix);
+
+        try {
+            List<S3Object> objects = new ArrayList<>();
+            String continuationToken = null;
+            do {
+                ListObjectsV2Request request = ListObjectsV2Request.builder()
+                        .bucket(bucketName)
+                        .prefix(prefix)
+                        .continuationToken(continuationToken)
+                        .build();
+                ListObjectsV2Response response;
+                try (S3ConcurrencyLimiter.Permit permit = concurrencyLimiter.acquire()) {
+                    response = s3Client.listObjectsV2(request);
+                }
+                for (S3Object object : response.contents()) {
+                    if (!object.key().endsWith("/")) {
+                        objects.add(object);
+                    }
+                }
+                continuationToken = Boolean.TRUE.equals(response.isTruncated()) ? response.nextContinuationToken() : null;
+            } while (continuationToken != null);
+
+            objects.sort(Comparator.comparing(S3Object::key));
+            logger.info("Found {} objects under prefix: {}", objects.size(), prefix);
+            return objects;
+
+        } catch (S3Exception e) {
+            logger.error("S3 Exception occurred while listing bucket: {}, prefix: {} - Error Code: {}, Status Code: {}, Message: {}",
+                    bucketName, prefix, e.awsErrorDetails().errorCode(),
+                    e.statusCode(), e.awsErrorDetails().errorMessage(), e);
+            throw new IOException("Failed to list objects in S3: " + e.awsErrorDetails().errorMessage(), e);
+        } catch (Exception e) {
+            logger.error("Unexpected error occurred while listing S3 - Bucket: {}, Prefix: {}",
+                    bucketName, prefix, e);
+            throw new IOException("Unexpected error listing S3", e);
+        }
+    }
+
+    private S3RangedDownloader rangedDownloader() {
+        S3RangedDownloader downloader = rangedDownloader;
+        if (downloader == null) {
+            synchronized (this) {
+                downloader = rangedDownloader;
+                if (downloader == null) {
+                    rangedDownloadExecutor = fetchExecutors.newExecutor("s3-download-", multipartParallelism);
+                    downloader = new S3RangedDownloader(s3Client, concurrencyLimiter, rangedDownloadExecutor,
+                            multipartPartSize);
+                    rangedDownloader = downloader;
+                    logger.info("Multipart download enabled with part size {} bytes and parallelism {}",
+                            multipartPartSize, multipartParallelism);
+                }
+            }
+        }
+        return downloader;
+    }
+
+    /**
+     * @return The limiter of passthrough reads, created on first use
+     */
+    public S3ConcurrencyLimiter passthroughLimiter() {
+        S3ConcurrencyLimiter limiter = passthroughLimiter;
+        if (limiter == null) {
+            synchronized (this) {
+                limiter = passthroughLimiter;
+                if (limiter == null) {
+                    limiter = new S3ConcurrencyLimiter(passthroughMaxConcurrentRequests, passthroughAcquireTimeout);
+                    passthroughLimiter = limiter;
+                }
+            }
+        }
+        return limiter;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (rangedDownloadExecutor != null) {
+            rangedDownloadExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Opens the configured JSON file for copying its body to a client without parsing it.
+     *
+     * @see #openObject(String, String)
+     */
+    public S3ObjectStream openJsonFile(String ifNoneMatch) throws IOException {
+        return openObject(jsonFileKey, ifNoneMatch);
+    }
+
+    /**
+     * Opens the given key for copying its body to a client without parsing it. The caller must
+     * close the returned stream, which holds a passthrough request slot until then. Passthrough
+     * has its own limiter ({@code aws.s3.passthrough.*}), since the slot is held for as long as the
+     * client takes to read the body, and slow clients must not starve the loader of slots.
+     *
+     * @param key The S3 key to read
+     * @param ifNoneMatch If-None-Match value of the client, or null; a match yields a not-modified stream without a body
+     */
+    public S3ObjectStream openObject(String key, String ifNoneMatch) throws IOException {
+        logger.info("Opening S3 object for passthrough - Bucket: {}, Key: {}, If-None-Match: {}", bucketName, key, ifNoneMatch);
+
+        if (key == null || key.trim().isEmpty()) {
+            logger.error("Invalid key provided: null or empty");
+            throw new IllegalArgumentException("S3 key cannot be null or empty");
+        }
+
+        S3ConcurrencyLimiter.Permit permit = passthroughLimiter().acquire();
+        try {
+            GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .ifNoneMatch(ifNoneMatch)
+                    .build();
+
+            ResponseInputStream<GetObjectResponse> s3Object = s3Client.getObject(getObjectRequest);
+            GetObjectResponse response = s3Object.response();
+            logger.debug("S3 Response for passthrough - Content Type: {}, Content Length: {}, ETag: {}",
+                    response.contentType(), response.contentLength(), response.eTag());
+
+            return new S3ObjectStream(key, true, response.eTag(), response.lastModified(), response.contentType(),
+                    response.contentEncoding(), response.contentLength() != null ? response.contentLength() : -1,
+                    s3Object, permit);
+
+        } catch (S3Exception e) {
+            if (e.statusCode() == HTTP_NOT_MODIFIED) {
+                logger.info("S3 object unchanged for client - Bucket: {}, Key: {}, ETag: {}", bucketName, key, ifNoneMatch);
+                return new S3ObjectStream(key, false, ifNoneMatch, null, null, null, -1, null, permit);
+            }
+            permit.close();
+            logger.error("S3 Exception occurred while opening bucket: {}, key: {} - Error Code: {}, Status Code: {}, Message: {}",
+                    bucketName, key, e.awsErrorDetails().errorCode(),
+                    e.statusCode(), e.awsErrorDetails().errorMessage(), e);
+            throw new IOException("Failed to read JSON file from S3: " + e.awsErrorDetails().errorMessage(), e);
+        } catch (Exception e) {
+            permit.close();
+            logger.error("Unexpected error occurred while opening S3 object - Bucket: {}, Key: {}", bucketName, key, e);
+            throw new IOException("Unexpected error reading from S3", e);
+        }
+    }
+
     public JsonNode readJsonFromS3ByKey(String key) throws IOException {
         logger.info("Attempting to read JSON from S3 with custom key - Bucket: {}, Key: {}", bucketName, key);
         
@@ -79,7 +440,7 @@ public class S3Service {
             throw new IllegalArgumentException("S3 key cannot be null or empty");
         }
         
-        try {
+        try (S3ConcurrencyLimiter.Permit permit = concurrencyLimiter.acquire()) {
             GetObjectRequest getObjectRequest = GetObjectRequest.builder()
                     .bucket(bucketName)
                     .key(key)
@@ -92,7 +453,10 @@ public class S3Service {
             logger.debug("S3 Response for custom key - Content Type: {}, Content Length: {}, ETag: {}", 
                     response.contentType(), response.contentLength(), response.eTag());
             
-            JsonNode jsonNode = objectMapper.readTree(s3Object);
+            JsonNode jsonNode;
+            try (InputStream content = S3ContentDecoder.decode(s3Object, key, response.contentEncoding())) {
+                jsonNode = objectMapper.readTree(content);
+            }
             logger.info("Successfully read and parsed JSON from S3 with custom key - Bucket: {}, Key: {}", bucketName, key);
             
             return jsonNode;
@@ -0,0 +1,88 @@
+package com.example.s3jsonreader.service;
+
+import com.example.s3jsonreader.snapshot.AdSnapshot;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The {@code /api/scheduler/cached-data} response of one published snapshot, serialized once so
+ * that requests only copy bytes. The strong ETags are derived from the snapshot's source version and
+ * the deltas applied on top of it, so they stay stable across restarts and pods for the same data.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@ToString(of = {"eTag", "jsonLength", "gzipLength"})
+public class SerializedSnapshot {
+
+    private final AdSnapshot snapshot;
+    private final String eTag;
+    private final String gzipETag;
+    // Null if pre-serialization is disabled or failed; the response is then serialized per request
+    private final byte[] json;
+    // Null unless gzip is enabled
+    private final byte[] gzip;
+    private final int jsonLength;
+    private final int gzipLength;
+
+    /**
+     * @param version Version of the data: the source version of the snapshot's base followed by the
+     * versions of the applied deltas, or null if unknown
+     * @param serialize Whether to serialize the response bytes
+     * @param compress Whether to also keep a gzip-compressed copy
+     */
+    static SerializedSnapshot of(AdSnapshot snapshot, String version, boolean serialize, boolean compress,
+                                 ObjectMapper objectMapper) throws IOException {
+        String tag = version != null ? digest(version) : UUID.randomUUID().toString();
+        byte[] json = serialize ? objectMapper.writeValueAsBytes(List.of(snapshot.asPojo())) : null;
+        byte[] gzip = json != null && compress ? gzip(json) : null;
+        return new SerializedSnapshot(snapshot, "\"" + tag + "\"", "\"" + tag + "-gzip\"", json, gzip,
+                json != null ? json.length : -1, gzip != null ? gzip.length : -1);
+    }
+
+    /**
+     * @param ifNoneMatch Value of the If-None-Match request header, or null
+     * @return true if the client already holds one of the representations
+     */
+    public boolean matches(String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(eTag) || tag.equals(gzipETag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] gzip(byte[] json) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(buffer, 1 << 16)) {
+            out.write(json);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static String digest(String value) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.s3jsonreader.service;
+
+import com.example.s3jsonreader.snapshot.AdSnapshot;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pins one {@link SnapshotVersion} for a reader. While a lease is open, the payload store of the
+ * version's base stays open even if newer versions are published; closing the last lease on a
+ * replaced base releases it. Closing a lease more than once has no effect.
+ */
+public final class SnapshotLease implements AutoCloseable {
+
+    private final SnapshotVersion version;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    SnapshotLease(SnapshotVersion version) {
+        this.version = version;
+    }
+
+    public SnapshotVersion getVersion() {
+        return version;
+    }
+
+    public AdSnapshot getData() {
+        return version.getData();
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            version.getBase().release();
+        }
+    }
+}
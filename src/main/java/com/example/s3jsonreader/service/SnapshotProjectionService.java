@@ -0,0 +1,75 @@
+package com.example.s3jsonreader.service;
+
+import com.example.s3jsonreader.snapshot.AdSnapshot;
+import com.example.s3jsonreader.snapshot.SnapshotPath;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves path projections against a pinned snapshot, so a client needing one ad gets a
+ * response the size of that ad rather than of the dataset. Compiled paths are kept in a small
+ * LRU cache since clients tend to repeat the same handful of expressions.
+ */
+@Service
+public class SnapshotProjectionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotProjectionService.class);
+
+    static final int MAX_COMPILED_PATHS = 1024;
+
+    // Access-ordered, guarded by itself
+    private final Map<String, SnapshotPath> compiledPaths = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SnapshotPath> eldest) {
+            return size() > MAX_COMPILED_PATHS;
+        }
+    };
+
+    /**
+     * @param paths JSON Pointers into the merged document element
+     * @param snapshot Snapshot pinned by the caller, which must stay pinned until the values are written
+     * since whole maps are returned as views, or null if no data has been loaded yet
+     * @return Each path mapped to its value (null if nothing is there), in request order,
+     * or null if no data has been loaded yet
+     * @throws IllegalArgumentException if a path is malformed or cannot match anything in the document
+     */
+    public Map<String, Object> project(List<String> paths, AdSnapshot snapshot) {
+        List<SnapshotPath> compiled = paths.stream().map(this::compile).toList();
+
+        if (snapshot == null) {
+            return null;
+        }
+
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (SnapshotPath path : compiled) {
+            values.put(path.toString(), path.resolve(snapshot));
+        }
+        logger.debug("Projected {} paths from {}", compiled.size(), snapshot);
+        return values;
+    }
+
+    SnapshotPath compile(String expression) {
+        synchronized (compiledPaths) {
+            SnapshotPath path = compiledPaths.get(expression);
+            if (path != null) {
+                return path;
+            }
+        }
+        SnapshotPath path = SnapshotPath.compile(expression);
+        synchronized (compiledPaths) {
+            compiledPaths.put(expression, path);
+        }
+        return path;
+    }
+
+    int compiledPathCount() {
+        synchronized (compiledPaths) {
+            return compiledPaths.size();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.s3jsonreader.service;
+
+import com.example.s3jsonreader.snapshot.AdSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the current {@link SnapshotVersion} and reference-counts the bases that versions share.
+ *
+ * <p>Acquiring a lease is wait-free: a reader announces itself on one of two counters, loads the
+ * current version, retains its base and leaves, a fixed number of atomic increments. A writer that
+ * replaces the last version of a base does not release the base until every reader still between
+ * loading and retaining it has left (the counters are flipped between epochs, so new readers never
+ * hold it up). After that no reader can retain the base anymore, and the base is closed by whoever
+ * drops the last reference: the writer, or the last lease on it.
+ */
+final class SnapshotSlot {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotSlot.class);
+
+    private final AtomicReference<SnapshotVersion> current = new AtomicReference<>();
+    // Readers between loading the current version and retaining its base, by epoch parity
+    private final AtomicLong[] acquiring = {new AtomicLong(), new AtomicLong()};
+    private volatile int epoch;
+    private final AtomicLong retiredBases = new AtomicLong();
+
+    /**
+     * @return The current version without pinning it, or null
+     */
+    SnapshotVersion get() {
+        return current.get();
+    }
+
+    /**
+     * @return A lease on the current version, or null if nothing is published
+     */
+    SnapshotLease acquire() {
+        AtomicLong readers = acquiring[epoch & 1];
+        readers.incrementAndGet();
+        SnapshotVersion version;
+        try {
+            version = current.get();
+            if (version != null) {
+                version.getBase().retain();
+            }
+        } finally {
+            readers.decrementAndGet();
+        }
+        return version != null ? new SnapshotLease(version) : null;
+    }
+
+    /**
+     * Starts reference counting a base snapshot. The slot holds the initial reference for as long as
+     * a version of the base is current.
+     */
+    SharedBase share(AdSnapshot base) {
+        return new SharedBase(base);
+    }
+
+    /**
+     * Replaces the current version. If the new version has a different base, the slot's reference
+     * on the old base is dropped once no reader can retain it anymore.
+     *
+     * @return false if the current version was not {@code expected}
+     */
+    boolean replace(SnapshotVersion expected, SnapshotVersion next) {
+        if (!current.compareAndSet(expected, next)) {
+            return false;
+        }
+        if (expected != null && (next == null || next.getBase() != expected.getBase())) {
+            retire(expected.getBase());
+        }
+        return true;
+    }
+
+    /**
+     * @return Bases replaced in the slot that are still held by leases
+     */
+    long retiredBasesInUse() {
+        return retiredBases.get();
+    }
+
+    private synchronized void retire(SharedBase base) {
+        retiredBases.incrementAndGet();
+        int previous = epoch & 1;
+        // Readers of the other parity loaded the epoch before the last flip and may still hold the old version
+        awaitReaders(acquiring[previous ^ 1]);
+        epoch++;
+        awaitReaders(acquiring[previous]);
+        base.release();
+    }
+
+    private static void awaitReaders(AtomicLong readers) {
+        while (readers.get() != 0) {
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Reference count on a base snapshot, whose payload store every version derived from it shares
+     */
+    final class SharedBase {
+
+        private final AdSnapshot snapshot;
+        private final AtomicLong references = new AtomicLong(1);
+
+        private SharedBase(AdSnapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        void retain() {
+            references.incrementAndGet();
+        }
+
+        void release() {
+            if (references.decrementAndGet() != 0) {
+                return;
+            }
+            retiredBases.decrementAndGet();
+            try {
+                snapshot.close();
+                logger.debug("Released {} after its last reader finished", snapshot);
+            } catch (Exception e) {
+                logger.warn("Failed to release previous snapshot: {}", e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.s3jsonreader.service;
+
+import com.example.s3jsonreader.snapshot.AdSnapshot;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * One published version of the cache: the snapshot together with everything describing it, so a
+ * reader holding a version sees data, source ETag, load time and statistics that belong together.
+ * Versions are immutable and replaced as a whole; see {@link S3DataCacheService#acquire()}.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+@ToString(of = {"version", "eTag", "loadTime", "data"})
+public final class SnapshotVersion {
+
+    // Increases with every publish, base or delta
+    private final long version;
+    private final AdSnapshot data;
+    // Version of the source the base was loaded from, null if unknown
+    private final String eTag;
+    // Identifies the data: the source version followed by every applied delta, null if unknown
+    private final String contentVersion;
+    private final LocalDateTime loadTime;
+    private final long heapBytes;
+    // Estimated heap of the snapshot this version replaced
+    private final long previousHeapBytes;
+    // Time it took to fetch and apply the deltas of this version, 0 for a base
+    private final long deltaApplyMillis;
+    // Null until the response is serialized
+    private final SerializedSnapshot serialized;
+    // Shared by every version derived from the same base
+    @Getter(AccessLevel.PACKAGE)
+    private final SnapshotSlot.SharedBase base;
+
+    public int getAppliedDeltas() {
+        return data.appliedDeltaCount();
+    }
+
+    /**
+     * @return The same version with its pre-serialized response attached
+     */
+    SnapshotVersion withSerialized(SerializedSnapshot serialized) {
+        return new SnapshotVersion(version, data, eTag, contentVersion, loadTime, heapBytes, previousHeapBytes,
+                deltaApplyMillis, serialized, base);
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.s3jsonreader.snapshot;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Set;
+
+/**
+ * A change set published next to a base snapshot, read by {@link AdSnapshotReader#readDelta}.
+ * Deletes are applied first, then upserts. An upserted ad gets the payload and/or query set
+ * given for it; whatever the delta does not mention is kept, so an ad can be re-indexed
+ * without resending its payload. An empty query array clears the ad's queries.
+ */
+@Getter
+@AllArgsConstructor
+public class AdDelta {
+
+    /**
+     * Upserted ads, with the same merge rules as the base document
+     */
+    private final AdSnapshot upserts;
+
+    /**
+     * Ids of the ads to remove
+     */
+    private final Set<String> deletes;
+
+    /**
+     * @return Number of ads touched by the delta
+     */
+    public int changeCount() {
+        return upserts.adCount() + deletes.size();
+    }
+}
@@ -0,0 +1,591 @@
+package com.example.s3jsonreader.snapshot;
+
+import com.example.s3jsonreader.pojo.POJO;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/**
+ * Immutable, typed view of the ad data loaded from S3.
+ * All array elements of the source document are merged into one snapshot. Every ad is
+ * assigned a dense int ordinal, ads with a payload first. An open-addressing index maps
+ * ad ids to ordinals, and payloads are held by a {@link PayloadStore} (on or off the heap)
+ * addressed by ordinal. Queries are dictionary-encoded: each distinct query string is held
+ * once in a {@link QueryDictionary}, the query set of an ad is a sorted array of query ids,
+ * and the inverted query index stores the matching ads of a query id as a sorted ordinal array.
+ * Instances are built by {@link AdSnapshotBuilder} and published as a whole.
+ * {@link #apply(AdDelta)} derives a new snapshot that shares all of the above and layers
+ * the delta's changes on top (see {@link DeltaOverlay}).
+ */
+public final class AdSnapshot implements AutoCloseable {
+
+    private static final int[] NO_ADS = new int[0];
+
+    private static final AdSnapshot EMPTY = new AdSnapshot(new String[0], HeapPayloadStore.empty(),
+            QueryDictionary.EMPTY, new int[0][]);
+
+    private final String[] adIdsByOrdinal;
+    private final StringOrdinalIndex adOrdinals;
+    private final PayloadStore payloads;
+    private final QueryDictionary queries;
+    // Null for ads without a query entry
+    private final QuerySet[] queriesByOrdinal;
+    private final int[][] adOrdinalsByQueryId;
+    private final int queryAdCount;
+    // Changes applied on top of the fields above, null for a base snapshot
+    private final DeltaOverlay overlay;
+    private final long baseHeapBytes;
+    private final long heapBytes;
+
+    /**
+     * @param queries Dictionary of every query used by at least one ad
+     * @param queryIdsByOrdinal Sorted, distinct query ids of each ad, null for ads without a query entry
+     */
+    AdSnapshot(String[] adIdsByOrdinal, PayloadStore payloads, QueryDictionary queries, int[][] queryIdsByOrdinal) {
+        this.adIdsByOrdinal = adIdsByOrdinal;
+        this.adOrdinals = new StringOrdinalIndex(adIdsByOrdinal);
+        this.payloads = payloads;
+        this.queries = queries;
+        this.queriesByOrdinal = new QuerySet[adIdsByOrdinal.length];
+        QuerySet noQueries = new QuerySet(queries, NO_ADS);
+        int withQueries = 0;
+        for (int ordinal = 0; ordinal < queryIdsByOrdinal.length; ordinal++) {
+            int[] ids = queryIdsByOrdinal[ordinal];
+            if (ids != null) {
+                queriesByOrdinal[ordinal] = ids.length > 0 ? new QuerySet(queries, ids) : noQueries;
+                withQueries++;
+            }
+        }
+        this.queryAdCount = withQueries;
+        this.adOrdinalsByQueryId = buildQueryIndex(queries.size(), queryIdsByOrdinal);
+        this.overlay = null;
+        this.baseHeapBytes = estimateBaseHeapBytes();
+        this.heapBytes = baseHeapBytes;
+    }
+
+    private AdSnapshot(AdSnapshot base, DeltaOverlay overlay) {
+        this.adIdsByOrdinal = base.adIdsByOrdinal;
+        this.adOrdinals = base.adOrdinals;
+        this.payloads = base.payloads;
+        this.queries = base.queries;
+        this.queriesByOrdinal = base.queriesByOrdinal;
+        this.adOrdinalsByQueryId = base.adOrdinalsByQueryId;
+        this.queryAdCount = base.queryAdCount;
+        this.overlay = overlay;
+        this.baseHeapBytes = base.baseHeapBytes;
+        this.heapBytes = baseHeapBytes + overlay.estimatedHeapBytes();
+    }
+
+    private long estimateBaseHeapBytes() {
+        long bytes = HeapEstimate.ofStrings(adIdsByOrdinal, adIdsByOrdinal.length)
+                + adOrdinals.slotHeapBytes()
+                + payloads.heapBytes()
+                + queries.estimatedHeapBytes()
+                + HeapEstimate.ofArray(queriesByOrdinal.length, HeapEstimate.REFERENCE)
+                + HeapEstimate.ofArray(adOrdinalsByQueryId.length, HeapEstimate.REFERENCE);
+        for (QuerySet set : queriesByOrdinal) {
+            if (set != null && !set.isEmpty()) {
+                bytes += HeapEstimate.QUERY_SET + HeapEstimate.ofArray(set.size(), Integer.BYTES);
+            }
+        }
+        for (int[] posting : adOrdinalsByQueryId) {
+            bytes += HeapEstimate.ofArray(posting.length, Integer.BYTES);
+        }
+        return bytes;
+    }
+
+    /**
+     * Inverts ad -> query ids into query id -> ad ordinals in two passes: the first sizes every
+     * posting array exactly, the second fills it. Ads are visited in ordinal order,
+     * so every posting array comes out sorted.
+     */
+    private static int[][] buildQueryIndex(int queryCount, int[][] queryIdsByOrdinal) {
+        int[] sizes = new int[queryCount];
+        for (int[] ids : queryIdsByOrdinal) {
+            if (ids != null) {
+                for (int id : ids) {
+                    sizes[id]++;
+                }
+            }
+        }
+
+        int[][] postings = new int[queryCount][];
+        for (int id = 0; id < queryCount; id++) {
+            postings[id] = new int[sizes[id]];
+        }
+        for (int ordinal = 0; ordinal < queryIdsByOrdinal.length; ordinal++) {
+            int[] ids = queryIdsByOrdinal[ordinal];
+            if (ids != null) {
+                for (int id : ids) {
+                    int[] posting = postings[id];
+                    posting[posting.length - sizes[id]--] = ordinal;
+                }
+            }
+        }
+        return postings;
+    }
+
+    public static AdSnapshot empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Derives a snapshot with the delta applied. This snapshot is left unchanged and keeps
+     * serving readers; the new one shares its base, including the payload store, so only the
+     * snapshot that is eventually replaced by a new base may be closed.
+     *
+     * @param delta The changes to apply
+     * @return A new snapshot reflecting the changes
+     */
+    public AdSnapshot apply(AdDelta delta) {
+        return new AdSnapshot(this, DeltaOverlay.apply(this, delta));
+    }
+
+    /**
+     * @return Number of deltas applied on top of the base this snapshot was loaded from
+     */
+    public int appliedDeltaCount() {
+        return overlay != null ? overlay.deltaCount : 0;
+    }
+
+    /**
+     * Looks up a payload with a probe of the ordinal index. Nothing is allocated when the
+     * payloads are held on the heap; an off-heap store decodes the payload on each call.
+     *
+     * @param adId The ad id to look up
+     * @return The payload of the ad, or null if the ad is unknown
+     */
+    public String getPayload(String adId) {
+        if (overlay != null) {
+            DeltaOverlay.AdState state = overlay.ads.get(adId);
+            if (state != null) {
+                return payloadOf(state);
+            }
+        }
+        int ordinal = adOrdinals.ordinalOf(adId);
+        return ordinal >= 0 ? payloads.get(ordinal) : null;
+    }
+
+    /**
+     * Looks up the stored query set of an ad; nothing is allocated.
+     *
+     * @param adId The ad id to look up
+     * @return The unmodifiable query set of the ad, or null if the ad is unknown
+     */
+    public Set<String> getQueries(String adId) {
+        if (overlay != null) {
+            DeltaOverlay.AdState state = overlay.ads.get(adId);
+            if (state != null) {
+                return state.deleted ? null : state.queries;
+            }
+        }
+        int ordinal = adOrdinals.ordinalOf(adId);
+        return ordinal >= 0 ? queriesByOrdinal[ordinal] : null;
+    }
+
+    /**
+     * Checks whether an ad has a query without materializing its query set.
+     *
+     * @return true if the ad is known and has the query
+     */
+    public boolean hasQuery(String adId, String query) {
+        if (overlay != null) {
+            DeltaOverlay.AdState state = overlay.ads.get(adId);
+            if (state != null) {
+                return !state.deleted && state.queries != null && state.queries.contains(query);
+            }
+        }
+        int ordinal = adOrdinals.ordinalOf(adId);
+        if (ordinal < 0 || queriesByOrdinal[ordinal] == null) {
+            return false;
+        }
+        int id = queries.idOf(query);
+        return id >= 0 && queriesByOrdinal[ordinal].containsId(id);
+    }
+
+    /**
+     * Looks up the ads matching a query in the inverted index.
+     * The returned array is shared by all readers and must not be modified.
+     *
+     * @param query The query string to look up
+     * @return Sorted ordinals of the matching ads, empty if the query is unknown
+     */
+    public int[] getAdOrdinalsForQuery(String query) {
+        int[] ordinals = overlay != null ? overlay.postings.get(query) : null;
+        if (ordinals == null) {
+            int id = queries.idOf(query);
+            ordinals = id >= 0 ? adOrdinalsByQueryId[id] : NO_ADS;
+        }
+        return ordinals;
+    }
+
+    /**
+     * Intersects the posting arrays of the queries, starting from the shortest one, so the
+     * cost is bounded by the rarest query rather than by the most common one.
+     *
+     * @param queries The queries every returned ad must match, at least one
+     * @return Sorted ordinals of the ads matching all of the queries
+     */
+    public int[] getAdOrdinalsForAllQueries(Collection<String> queries) {
+        if (queries.isEmpty()) {
+            throw new IllegalArgumentException("At least one query is required");
+        }
+        int[][] postings = new int[queries.size()][];
+        int count = 0;
+        for (String query : queries) {
+            int[] ordinals = getAdOrdinalsForQuery(query);
+            if (ordinals.length == 0) {
+                return NO_ADS;
+            }
+            postings[count++] = ordinals;
+        }
+        if (count == 1) {
+            return postings[0];
+        }
+        Arrays.sort(postings, Comparator.comparingInt(posting -> posting.length));
+
+        // Filtered in place: an ordinal is only ever moved towards the front
+        int[] result = postings[0].clone();
+        int size = result.length;
+        for (int i = 1; i < count && size > 0; i++) {
+            int[] other = postings[i];
+            int kept = 0;
+            int from = 0;
+            for (int j = 0; j < size && from < other.length; j++) {
+                int found = Arrays.binarySearch(other, from, other.length, result[j]);
+                if (found >= 0) {
+                    result[kept++] = result[j];
+                    from = found + 1;
+                } else {
+                    from = -found - 1;
+                }
+            }
+            size = kept;
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    /**
+     * @param ordinal An ordinal returned by {@link #getAdOrdinalsForQuery(String)}
+     * @return The ad id assigned to the ordinal
+     */
+    public String getAdId(int ordinal) {
+        if (ordinal >= adIdsByOrdinal.length && overlay != null) {
+            return overlay.addedAdIds[ordinal - adIdsByOrdinal.length];
+        }
+        return adIdsByOrdinal[ordinal];
+    }
+
+    /**
+     * @param query The query string to look up
+     * @return Ids of the ads matching the query, empty if the query is unknown
+     */
+    public List<String> getAdsForQuery(String query) {
+        return toAdIds(getAdOrdinalsForQuery(query));
+    }
+
+    private List<String> toAdIds(int[] ordinals) {
+        if (ordinals.length == 0) {
+            return Collections.emptyList();
+        }
+        List<String> adIds = new ArrayList<>(ordinals.length);
+        for (int ordinal : ordinals) {
+            adIds.add(getAdId(ordinal));
+        }
+        return adIds;
+    }
+
+    /**
+     * @param queries The queries every returned ad must match, at least one
+     * @return Ids of the ads matching all of the queries
+     */
+    public List<String> getAdsForAllQueries(Collection<String> queries) {
+        return toAdIds(getAdOrdinalsForAllQueries(queries));
+    }
+
+    /**
+     * @return Number of distinct queries in the inverted index
+     */
+    public int queryCount() {
+        return overlay != null ? overlay.queryCount : queries.size();
+    }
+
+    public boolean containsAd(String adId) {
+        if (overlay != null) {
+            DeltaOverlay.AdState state = overlay.ads.get(adId);
+            if (state != null) {
+                return !state.deleted;
+            }
+        }
+        return adOrdinals.ordinalOf(adId) >= 0;
+    }
+
+    /**
+     * @return Number of ads that have a payload
+     */
+    public int size() {
+        return overlay != null ? overlay.payloadCount : payloads.size();
+    }
+
+    /**
+     * @return Number of ads, with or without a payload
+     */
+    public int adCount() {
+        return overlay != null ? overlay.adCount : adIdsByOrdinal.length;
+    }
+
+    /**
+     * @return The payload of the ad at the ordinal, or null if it has none or was deleted
+     */
+    String payloadAt(int ordinal) {
+        if (overlay != null) {
+            DeltaOverlay.AdState state = overlay.ads.get(getAdId(ordinal));
+            if (state != null) {
+                return payloadOf(state);
+            }
+        }
+        return payloads.get(ordinal);
+    }
+
+    private String payloadOf(DeltaOverlay.AdState state) {
+        if (!state.hasPayload()) {
+            return null;
+        }
+        return state.basePayload ? payloads.get(state.ordinal) : state.payload;
+    }
+
+    DeltaOverlay overlay() {
+        return overlay;
+    }
+
+    /**
+     * @return Ordinal of the ad in the base, ignoring any overlay, or -1
+     */
+    int baseOrdinalOf(String adId) {
+        return adOrdinals.ordinalOf(adId);
+    }
+
+    int baseOrdinalCount() {
+        return adIdsByOrdinal.length;
+    }
+
+    int basePayloadCount() {
+        return payloads.size();
+    }
+
+    QueryDictionary baseQueries() {
+        return queries;
+    }
+
+    /**
+     * @return Sorted query ids of the ad at the base ordinal, ignoring any overlay, or null
+     */
+    int[] baseQueryIdsAt(int ordinal) {
+        QuerySet set = queriesByOrdinal[ordinal];
+        return set != null ? set.ids() : null;
+    }
+
+    /**
+     * @return Upper bound (exclusive) of the ordinals in use, including deleted ads
+     */
+    private int ordinalLimit() {
+        return adIdsByOrdinal.length + (overlay != null ? overlay.addedAdIds.length : 0);
+    }
+
+    /**
+     * @return Number of payload bytes held by the payload store
+     */
+    public long payloadBytes() {
+        return payloads.storedBytes();
+    }
+
+    /**
+     * @return Estimated Java heap retained by the snapshot, including the base it shares with
+     * snapshots derived from it; payloads held off the heap are not counted. Computed when the
+     * snapshot is created.
+     */
+    public long estimatedHeapBytes() {
+        return heapBytes;
+    }
+
+    /**
+     * @return Estimated Java heap of the base, which every snapshot derived from it shares
+     */
+    public long baseHeapBytes() {
+        return baseHeapBytes;
+    }
+
+    /**
+     * Exposes the snapshot in the same shape as a single element of the source document.
+     * Nothing is copied: payloads are served through a read-only view that decodes them
+     * from the payload store while the map is iterated.
+     */
+    public POJO asPojo() {
+        POJO pojo = new POJO();
+        pojo.setAdIdToPayload(new PayloadMapView());
+        pojo.setAdIdToQueries(new QueryMapView());
+        return pojo;
+    }
+
+    /**
+     * Releases the resources of the payload store, which snapshots derived with {@link #apply} share.
+     */
+    @Override
+    public void close() {
+        payloads.close();
+    }
+
+    @Override
+    public String toString() {
+        return "AdSnapshot(payloads=" + size() + ", ads=" + adCount()
+                + ", distinctQueries=" + queryCount() + ", deltas=" + appliedDeltaCount()
+                + ", estimatedHeapBytes=" + heapBytes + ")";
+    }
+
+    private final class PayloadMapView extends AbstractMap<String, String> {
+
+        @Override
+        public String get(Object key) {
+            return key instanceof String ? getPayload((String) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return AdSnapshot.this.size();
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            if (overlay != null) {
+                return new OrdinalEntrySet<>(AdSnapshot.this.size(), AdSnapshot.this::payloadAt);
+            }
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, String>> iterator() {
+                    // Ads with a payload occupy the leading ordinals
+                    return new Iterator<>() {
+                        private int next;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < payloads.size();
+                        }
+
+                        @Override
+                        public Entry<String, String> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            int ordinal = next++;
+                            return new SimpleImmutableEntry<>(adIdsByOrdinal[ordinal], payloads.get(ordinal));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return payloads.size();
+                }
+            };
+        }
+    }
+
+    private final class QueryMapView extends AbstractMap<String, Set<String>> {
+
+        private int size = overlay != null ? -1 : queryAdCount;
+
+        @Override
+        public Set<String> get(Object key) {
+            return key instanceof String ? getQueries((String) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public Set<Entry<String, Set<String>>> entrySet() {
+            if (size < 0) {
+                int count = 0;
+                for (int ordinal = 0; ordinal < ordinalLimit(); ordinal++) {
+                    if (getQueries(getAdId(ordinal)) != null) {
+                        count++;
+                    }
+                }
+                size = count;
+            }
+            return new OrdinalEntrySet<>(size, ordinal -> getQueries(getAdId(ordinal)));
+        }
+    }
+
+    /**
+     * Entries of every ordinal whose value is not null, for snapshots with an overlay where
+     * deleted and re-keyed ads leave gaps in the ordinal range.
+     */
+    private final class OrdinalEntrySet<V> extends AbstractSet<Map.Entry<String, V>> {
+
+        private final int size;
+        private final IntFunction<V> valueAt;
+
+        OrdinalEntrySet(int size, IntFunction<V> valueAt) {
+            this.size = size;
+            this.valueAt = valueAt;
+        }
+
+        @Override
+        public Iterator<Map.Entry<String, V>> iterator() {
+            return new Iterator<>() {
+                private int next = -1;
+                private V nextValue;
+
+                {
+                    advance();
+                }
+
+                private void advance() {
+                    nextValue = null;
+                    while (nextValue == null && ++next < ordinalLimit()) {
+                        nextValue = valueAt.apply(next);
+                    }
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return nextValue != null;
+                }
+
+                @Override
+                public Map.Entry<String, V> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    Map.Entry<String, V> entry = new AbstractMap.SimpleImmutableEntry<>(getAdId(next), nextValue);
+                    advance();
+                    return entry;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package com.example.s3jsonreader.snapshot;
+
+import com.example.s3jsonreader.pojo.POJO;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Accumulates the array elements of the source document into a single {@link AdSnapshot}.
+ * When an ad id appears in several elements, the last payload wins and the query sets are merged.
+ * Payloads are handed to the {@link PayloadStore.Writer} as they arrive, so with an off-heap
+ * writer they never accumulate on the heap. Ad ids and queries are interned into int ids as
+ * they arrive, so each distinct string is kept once, and everything collected per ad lives in
+ * arrays indexed by that id rather than in per-entry map nodes.
+ * Not thread-safe; a builder is used by one loader thread and discarded after {@link #build()}.
+ * To ingest several sources in parallel, give each thread its own {@link #newShardBuilder() shard builder}
+ * and {@link #merge(AdSnapshotBuilder) merge} them in source order.
+ * With a {@link SnapshotHeapBudget}, the builder keeps a running estimate of its heap use and
+ * reserves it from the budget in chunks, failing with {@link HeapBudgetExceededException} once the
+ * budget is spent; the estimate is checked by {@link #putPayload} and {@link #checkHeapBudget()}.
+ */
+public class AdSnapshotBuilder {
+
+    private static final int[] NO_QUERY_IDS = new int[0];
+    private static final int INITIAL_CAPACITY = 16;
+    // Estimated bytes accumulated before they are reserved from the budget
+    private static final long RESERVE_CHUNK = 1 << 20;
+    // Per ad: key and query array references, slot, payload handle and query count, with growth headroom
+    private static final long AD_ENTRY_BYTES = 48;
+    // Per query string: key reference and slot, with growth headroom
+    private static final long QUERY_ENTRY_BYTES = 16;
+    // Per query id of an ad, with growth headroom
+    private static final long QUERY_ID_BYTES = 6;
+    // Per ad and per query id, what build() allocates on top of the builder's own arrays
+    private static final long BUILD_AD_BYTES = 40;
+    private static final long BUILD_QUERY_ID_BYTES = 4;
+
+    private final PayloadStore.Writer payloadWriter;
+    private final boolean ownsWriter;
+    private final SnapshotHeapBudget heapBudget;
+    private final boolean countPayloads;
+    private long unreservedBytes;
+    private long queryIdCount;
+    private StringOrdinalIndex adIds = new StringOrdinalIndex();
+    private StringOrdinalIndex queries = new StringOrdinalIndex();
+    // Indexed by ad id ordinal in this builder
+    private long[] payloadHandles = newPayloadHandles(INITIAL_CAPACITY);
+    // Unsorted and possibly repeated until the snapshot is built; null until the ad has a query entry
+    private int[][] queryIds = new int[INITIAL_CAPACITY][];
+    private int[] queryCounts = new int[INITIAL_CAPACITY];
+
+    public AdSnapshotBuilder() {
+        this(HeapPayloadStore.writer());
+    }
+
+    public AdSnapshotBuilder(PayloadStore.Writer payloadWriter) {
+        this(payloadWriter, SnapshotHeapBudget.UNLIMITED);
+    }
+
+    public AdSnapshotBuilder(PayloadStore.Writer payloadWriter, SnapshotHeapBudget heapBudget) {
+        this(payloadWriter, true, heapBudget);
+    }
+
+    private AdSnapshotBuilder(PayloadStore.Writer payloadWriter, boolean ownsWriter, SnapshotHeapBudget heapBudget) {
+        this.payloadWriter = payloadWriter;
+        this.ownsWriter = ownsWriter;
+        this.heapBudget = heapBudget;
+        this.countPayloads = heapBudget.isLimited() && payloadWriter.keepsPayloadsOnHeap();
+    }
+
+    /**
+     * Creates a builder for one source of a multi-source snapshot. It appends payloads to this
+     * builder's writer, so merging it back later does not copy any payload.
+     */
+    public AdSnapshotBuilder newShardBuilder() {
+        return new AdSnapshotBuilder(payloadWriter, false, heapBudget);
+    }
+
+    /**
+     * Merges a shard builder into this one with the same semantics as a later array element:
+     * the shard's payloads win and query sets are merged. The shard interned its ad ids and
+     * queries into its own ids, which are translated to this builder's. The shard must not be
+     * used afterwards.
+     */
+    public AdSnapshotBuilder merge(AdSnapshotBuilder shard) {
+        if (shard.payloadWriter != payloadWriter) {
+            throw new IllegalArgumentException("Only shard builders created by this builder can be merged");
+        }
+        int[] translated = new int[shard.queries.size()];
+        for (int id = 0; id < translated.length; id++) {
+            translated[id] = queryIdOf(shard.queries.keyOf(id));
+        }
+
+        for (int shardAd = 0; shardAd < shard.adIds.size(); shardAd++) {
+            int ad = adOrdinalOf(shard.adIds.keyOf(shardAd));
+            if (shard.payloadHandles[shardAd] != PayloadStore.Writer.NO_PAYLOAD) {
+                payloadHandles[ad] = shard.payloadHandles[shardAd];
+            }
+            int[] ids = shard.queryIds[shardAd];
+            if (ids == null) {
+                continue;
+            }
+            int count = shard.queryCounts[shardAd];
+            if (queryIds[ad] == null) {
+                for (int i = 0; i < count; i++) {
+                    ids[i] = translated[ids[i]];
+                }
+                queryIds[ad] = ids;
+                queryCounts[ad] = count;
+                queryIdCount += count;
+            } else {
+                for (int i = 0; i < count; i++) {
+                    addQueryId(ad, translated[ids[i]]);
+                }
+            }
+        }
+        // New entries are estimated again here although the shard reserved them already,
+        // since the shard's arrays stay reachable until it is discarded
+        shard.release();
+        return this;
+    }
+
+    public AdSnapshotBuilder add(POJO pojo) throws IOException {
+        if (pojo.getAdIdToPayload() != null) {
+            for (Map.Entry<String, String> entry : pojo.getAdIdToPayload().entrySet()) {
+                putPayload(entry.getKey(), entry.getValue());
+            }
+        }
+        if (pojo.getAdIdToQueries() != null) {
+            pojo.getAdIdToQueries().forEach(this::addQueries);
+        }
+        return this;
+    }
+
+    public AdSnapshotBuilder putPayload(String adId, String payload) throws IOException {
+        int ad = adOrdinalOf(adId);
+        payloadHandles[ad] = payloadWriter.append(payload);
+        if (countPayloads) {
+            unreservedBytes += HeapEstimate.ofString(payload.length()) + HeapEstimate.REFERENCE;
+        }
+        checkHeapBudget();
+        return this;
+    }
+
+    public AdSnapshotBuilder addQueries(String adId, Iterable<String> queries) {
+        int ad = adOrdinalOf(adId);
+        if (queryIds[ad] == null) {
+            queryIds[ad] = NO_QUERY_IDS;
+        }
+        if (queries != null) {
+            for (String query : queries) {
+                addQueryId(ad, queryIdOf(query));
+            }
+        }
+        return this;
+    }
+
+    public AdSnapshotBuilder addQuery(String adId, String query) {
+        addQueryId(adOrdinalOf(adId), queryIdOf(query));
+        return this;
+    }
+
+    /**
+     * Reserves the heap estimated since the last reservation once it adds up to a chunk.
+     * Called by {@link #putPayload}; readers that only add queries call it after each ad.
+     *
+     * @throws HeapBudgetExceededException if the budget is spent
+     */
+    public void checkHeapBudget() throws HeapBudgetExceededException {
+        if (unreservedBytes >= RESERVE_CHUNK) {
+            long bytes = unreservedBytes;
+            unreservedBytes = 0;
+            heapBudget.reserve(bytes);
+        }
+    }
+
+    private int queryIdOf(String query) {
+        int size = queries.size();
+        int id = queries.add(query);
+        if (id == size) {
+            unreservedBytes += HeapEstimate.ofString(query.length()) + QUERY_ENTRY_BYTES;
+        }
+        return id;
+    }
+
+    /**
+     * @return The ordinal of the ad id in this builder, growing the per-ad arrays for a new one
+     */
+    private int adOrdinalOf(String adId) {
+        int size = adIds.size();
+        int ad = adIds.add(adId);
+        if (ad == size) {
+            unreservedBytes += HeapEstimate.ofString(adId.length()) + AD_ENTRY_BYTES;
+        }
+        if (ad == payloadHandles.length) {
+            int capacity = ad * 2;
+            long[] handles = newPayloadHandles(capacity);
+            System.arraycopy(payloadHandles, 0, handles, 0, ad);
+            payloadHandles = handles;
+            queryIds = Arrays.copyOf(queryIds, capacity);
+            queryCounts = Arrays.copyOf(queryCounts, capacity);
+        }
+        return ad;
+    }
+
+    private void addQueryId(int ad, int queryId) {
+        int[] ids = queryIds[ad];
+        int count = queryCounts[ad];
+        if (ids == null || count == ids.length) {
+            ids = Arrays.copyOf(ids != null ? ids : NO_QUERY_IDS, Math.max(4, count * 2));
+            queryIds[ad] = ids;
+        }
+        ids[count] = queryId;
+        queryCounts[ad] = count + 1;
+        queryIdCount++;
+        unreservedBytes += QUERY_ID_BYTES;
+    }
+
+    private static long[] newPayloadHandles(int capacity) {
+        long[] handles = new long[capacity];
+        Arrays.fill(handles, PayloadStore.Writer.NO_PAYLOAD);
+        return handles;
+    }
+
+    /**
+     * Freezes the accumulated entries into an immutable snapshot and builds the inverted
+     * query index. The builder must not be used afterwards.
+     */
+    public AdSnapshot build() throws IOException {
+        if (!ownsWriter) {
+            throw new IllegalStateException("Shard builders must be merged, not built");
+        }
+        try {
+            // The snapshot's own arrays and the inverted index are allocated while the builder's are still live
+            heapBudget.reserve(unreservedBytes + adIds.size() * BUILD_AD_BYTES + queryIdCount * BUILD_QUERY_ID_BYTES);
+            unreservedBytes = 0;
+
+            // Ads with a payload get the leading ordinals, ads that only have queries follow
+            int adCount = adIds.size();
+            String[] adIdsByOrdinal = new String[adCount];
+            long[] handlesByOrdinal = new long[adCount];
+            int[][] queryIdsByOrdinal = new int[adCount][];
+            int ordinal = 0;
+            for (int pass = 0; pass < 2; pass++) {
+                boolean withPayload = pass == 0;
+                for (int ad = 0; ad < adCount; ad++) {
+                    if ((payloadHandles[ad] != PayloadStore.Writer.NO_PAYLOAD) == withPayload) {
+                        adIdsByOrdinal[ordinal] = adIds.keyOf(ad);
+                        handlesByOrdinal[ordinal] = payloadHandles[ad];
+                        queryIdsByOrdinal[ordinal] = frozenQueryIds(queryIds[ad], queryCounts[ad]);
+                        ordinal++;
+                    }
+                }
+            }
+            QueryDictionary dictionary = new QueryDictionary(queries.toArray());
+
+            return new AdSnapshot(adIdsByOrdinal, payloadWriter.finish(handlesByOrdinal), dictionary, queryIdsByOrdinal);
+        } catch (IOException | RuntimeException e) {
+            payloadWriter.abort();
+            throw e;
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * @return The query ids sorted and without repeats, or null if the ad has no query entry
+     */
+    private static int[] frozenQueryIds(int[] ids, int count) {
+        if (ids == null) {
+            return null;
+        }
+        Arrays.sort(ids, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || ids[distinct - 1] != ids[i]) {
+                ids[distinct++] = ids[i];
+            }
+        }
+        if (distinct == 0) {
+            return NO_QUERY_IDS;
+        }
+        return distinct == ids.length ? ids : Arrays.copyOf(ids, distinct);
+    }
+
+    /**
+     * Discards everything collected so far, releasing any off-heap space already written.
+     * Aborting a shard builder only drops the shard; the owning builder must be aborted as well.
+     */
+    public void abort() {
+        if (ownsWriter) {
+            payloadWriter.abort();
+        }
+        release();
+    }
+
+    private void release() {
+        adIds = null;
+        queries = null;
+        payloadHandles = null;
+        queryIds = null;
+        queryCounts = null;
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.s3jsonreader.snapshot;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Compact binary on-disk copy of an {@link AdSnapshot}, used to warm-start the cache before
+ * the first S3 refresh completes. Layout (big-endian):
+ *
+ * <pre>
+ *   int    magic, int format version
+ *   ...    payload region: length-prefixed UTF-8 records, as written by {@link MappedPayloadStore}
+ *   ...    index: source ETag, source Last-Modified, query count, queries by id,
+ *          ad count, then per ordinal: ad id, payload offset (-1 if none),
+ *          query id count (-1 if the ad has no query entry), sorted query ids
+ *   long   position of the index
+ *   long   CRC32 of every byte before this field
+ * </pre>
+ *
+ * Because the payload region uses the mapped store's record format, an off-heap snapshot is
+ * restored by mapping the region in place; only the index is decoded onto the heap.
+ */
+public final class AdSnapshotFile {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdSnapshotFile.class);
+
+    private static final int MAGIC = 0x4144534E; // "ADSN"
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int TRAILER_SIZE = 2 * Long.BYTES;
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private AdSnapshotFile() {
+    }
+
+    /**
+     * A snapshot restored from disk together with the version of the S3 object it was built from.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Restored {
+        private final AdSnapshot snapshot;
+        private final String eTag;
+        private final Instant lastModified;
+    }
+
+    /**
+     * Writes the snapshot to a temporary file next to {@code target} and atomically moves it into
+     * place, so a crash never leaves a truncated file behind and readers mapping the previous
+     * file keep their view. Only base snapshots can be written, not ones with deltas applied.
+     */
+    public static void write(AdSnapshot snapshot, String eTag, Instant lastModified, Path target) throws IOException {
+        if (snapshot.overlay() != null) {
+            throw new IllegalArgumentException("Snapshots with applied deltas cannot be persisted");
+        }
+        Path directory = target.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+
+        try {
+            CRC32 crc = new CRC32();
+            long indexPosition;
+            try (CheckedOutputStream checked = new CheckedOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp, StandardOpenOption.WRITE), 1 << 16), crc);
+                 DataOutputStream out = new DataOutputStream(checked)) {
+
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+
+                int adCount = snapshot.adCount();
+                long[] payloadOffsets = new long[adCount];
+                MappedPayloadStore.RecordWriter records = new MappedPayloadStore.RecordWriter(out);
+                for (int ordinal = 0; ordinal < adCount; ordinal++) {
+                    String payload = snapshot.payloadAt(ordinal);
+                    payloadOffsets[ordinal] = payload != null ? records.append(payload) : PayloadStore.Writer.NO_PAYLOAD;
+                }
+                indexPosition = HEADER_SIZE + records.length();
+
+                writeString(out, eTag);
+                out.writeLong(lastModified != null ? lastModified.toEpochMilli() : NO_TIMESTAMP);
+                QueryDictionary queries = snapshot.baseQueries();
+                out.writeInt(queries.size());
+                for (int id = 0; id < queries.size(); id++) {
+                    writeString(out, queries.queryOf(id));
+                }
+                out.writeInt(adCount);
+                for (int ordinal = 0; ordinal < adCount; ordinal++) {
+                    writeString(out, snapshot.getAdId(ordinal));
+                    out.writeLong(payloadOffsets[ordinal]);
+                    int[] queryIds = snapshot.baseQueryIdsAt(ordinal);
+                    out.writeInt(queryIds != null ? queryIds.length : -1);
+                    if (queryIds != null) {
+                        for (int id : queryIds) {
+                            out.writeInt(id);
+                        }
+                    }
+                }
+
+                out.writeLong(indexPosition);
+                out.flush();
+                out.writeLong(crc.getValue());
+            }
+
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.debug("Wrote snapshot {} to {} (index at {})", snapshot, target, indexPosition);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * Restores a snapshot written by {@link #write}. The checksum is verified before anything is decoded.
+     *
+     * @param offHeap true to serve payloads straight from the mapped file, false to decode them onto the heap
+     * @throws IOException if the file is missing, truncated, of another format or fails the checksum
+     */
+    public static Restored read(Path file, boolean offHeap) throws IOException {
+        long indexPosition;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE + TRAILER_SIZE) {
+                throw new IOException("Snapshot file " + file + " is truncated");
+            }
+
+            ByteBuffer header = readFully(channel, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION) {
+                throw new IOException("Snapshot file " + file + " has an unsupported format");
+            }
+            ByteBuffer trailer = readFully(channel, fileSize - TRAILER_SIZE, TRAILER_SIZE);
+            indexPosition = trailer.getLong();
+            long expectedCrc = trailer.getLong();
+
+            long checkedLength = fileSize - Long.BYTES;
+            if (indexPosition < HEADER_SIZE || indexPosition > checkedLength - Long.BYTES
+                    || checksum(channel, checkedLength) != expectedCrc) {
+                throw new IOException("Snapshot file " + file + " failed checksum verification");
+            }
+        }
+
+        String eTag;
+        long lastModifiedMillis;
+        String[] adIdsByOrdinal;
+        long[] payloadOffsets;
+        String[] queriesById;
+        int[][] queryIdsByOrdinal;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             InputStream indexStream = new BufferedInputStream(Channels.newInputStream(channel.position(indexPosition)), 1 << 16);
+             DataInputStream in = new DataInputStream(indexStream)) {
+
+            eTag = readString(in);
+            lastModifiedMillis = in.readLong();
+            queriesById = new String[in.readInt()];
+            for (int id = 0; id < queriesById.length; id++) {
+                queriesById[id] = readString(in);
+            }
+            int adCount = in.readInt();
+            adIdsByOrdinal = new String[adCount];
+            payloadOffsets = new long[adCount];
+            queryIdsByOrdinal = new int[adCount][];
+            for (int ordinal = 0; ordinal < adCount; ordinal++) {
+                adIdsByOrdinal[ordinal] = readString(in);
+                payloadOffsets[ordinal] = in.readLong();
+                int queryCount = in.readInt();
+                if (queryCount >= 0) {
+                    int[] queryIds = new int[queryCount];
+                    for (int i = 0; i < queryCount; i++) {
+                        queryIds[i] = in.readInt();
+                    }
+                    queryIdsByOrdinal[ordinal] = queryIds;
+                }
+            }
+        }
+
+        MappedPayloadStore mapped = MappedPayloadStore.map(file, HEADER_SIZE, indexPosition - HEADER_SIZE,
+                payloadOffsets, false);
+        PayloadStore payloads = offHeap ? mapped : HeapPayloadStore.copyOf(mapped, adIdsByOrdinal.length);
+
+        AdSnapshot snapshot = new AdSnapshot(adIdsByOrdinal, payloads, new QueryDictionary(queriesById), queryIdsByOrdinal);
+        Instant lastModified = lastModifiedMillis != NO_TIMESTAMP ? Instant.ofEpochMilli(lastModifiedMillis) : null;
+        return new Restored(snapshot, eTag, lastModified);
+    }
+
+    private static long checksum(FileChannel channel, long length) throws IOException {
+        CRC32 crc = new CRC32();
+        for (long position = 0; position < length; position += MappedPayloadStore.SEGMENT_SIZE) {
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(MappedPayloadStore.SEGMENT_SIZE, length - position)));
+        }
+        return crc.getValue();
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of snapshot file");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.s3jsonreader.snapshot;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.format.DataFormatDetector;
+import com.fasterxml.jackson.core.format.DataFormatMatcher;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Reads the {@code [ {adIdToPayload, adIdToQueries}, ... ]} document into an {@link AdSnapshot}.
+ * The document is consumed token by token and every entry is fed straight into the builder,
+ * so neither a JsonNode tree nor per-element POJO maps are ever materialized: peak memory
+ * during a reload is bounded by the index being built. A single root object is accepted as well.
+ *
+ * <p>Documents may also be encoded as Smile, Jackson's binary JSON, which is recognized by its
+ * {@code :)\n} header whatever the key or content type. Smile carries the same data with
+ * back-referenced field names and strings and no text-to-number parsing, so it is smaller to
+ * download and cheaper to parse; {@code tool.SnapshotConverter} produces it from the JSON document.
+ */
+public class AdSnapshotReader {
+
+    private static final String PAYLOAD_FIELD = "adIdToPayload";
+    private static final String QUERIES_FIELD = "adIdToQueries";
+    private static final String UPSERTS_FIELD = "upserts";
+    private static final String DELETES_FIELD = "deletes";
+
+    private final ObjectMapper objectMapper;
+    private final DataFormatDetector formatDetector;
+
+    public AdSnapshotReader(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.formatDetector = new DataFormatDetector(new SmileFactory(), objectMapper.getFactory());
+    }
+
+    public AdSnapshot read(InputStream inputStream) throws IOException {
+        return read(inputStream, new AdSnapshotBuilder());
+    }
+
+    /**
+     * Reads the document into the given builder and builds the snapshot.
+     * The builder is aborted if the document cannot be read.
+     */
+    public AdSnapshot read(InputStream inputStream, AdSnapshotBuilder builder) throws IOException {
+        try {
+            readInto(inputStream, builder);
+        } catch (IOException | RuntimeException e) {
+            builder.abort();
+            throw e;
+        }
+        return builder.build();
+    }
+
+    /**
+     * Feeds the document into the given builder without building, e.g. one shard of a multi-object dataset.
+     */
+    public void readInto(InputStream inputStream, AdSnapshotBuilder builder) throws IOException {
+        try (JsonParser parser = createParser(inputStream)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    readElement(parser, token, builder);
+                }
+            } else if (token != null) {
+                readElement(parser, token, builder);
+            }
+        }
+    }
+
+    /**
+     * Reads a delta document: {@code {"upserts": [ {adIdToPayload, adIdToQueries}, ... ], "deletes": [adId, ...]}}.
+     * Both fields are optional and {@code upserts} may also be a single object. Upserted payloads are kept on the heap.
+     */
+    public AdDelta readDelta(InputStream inputStream) throws IOException {
+        return readDelta(inputStream, new AdSnapshotBuilder());
+    }
+
+    /**
+     * Reads a delta document with its upserts fed into the given builder, which decides where their
+     * payloads are kept and which heap budget they count against. The builder is aborted if the
+     * document cannot be read.
+     */
+    public AdDelta readDelta(InputStream inputStream, AdSnapshotBuilder upserts) throws IOException {
+        Set<String> deletes = new LinkedHashSet<>();
+        try (JsonParser parser = createParser(inputStream)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a delta object with " + UPSERTS_FIELD + "/" + DELETES_FIELD
+                        + " at " + parser.currentLocation());
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (UPSERTS_FIELD.equals(field) && value == JsonToken.START_ARRAY) {
+                    while ((value = parser.nextToken()) != JsonToken.END_ARRAY) {
+                        readElement(parser, value, upserts);
+                    }
+                } else if (UPSERTS_FIELD.equals(field) && value == JsonToken.START_OBJECT) {
+                    readElement(parser, value, upserts);
+                } else if (DELETES_FIELD.equals(field) && value == JsonToken.START_ARRAY) {
+                    while ((value = parser.nextToken()) != JsonToken.END_ARRAY) {
+                        if (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY) {
+                            throw new IOException("Expected ad ids in " + DELETES_FIELD
+                                    + " but found " + value + " at " + parser.currentLocation());
+                        }
+                        if (value != JsonToken.VALUE_NULL) {
+                            deletes.add(parser.getValueAsString());
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            upserts.abort();
+            throw e;
+        }
+        return new AdDelta(upserts.build(), Collections.unmodifiableSet(deletes));
+    }
+
+    /**
+     * Creates a Smile parser if the stream starts with the Smile header, a JSON parser otherwise
+     */
+    private JsonParser createParser(InputStream inputStream) throws IOException {
+        DataFormatMatcher match = formatDetector.findFormat(inputStream);
+        if (match.hasMatch()) {
+            return match.createParserWithMatch();
+        }
+        return objectMapper.getFactory().createParser(match.getDataStream());
+    }
+
+    private void readElement(JsonParser parser, JsonToken token, AdSnapshotBuilder builder) throws IOException {
+        if (token != JsonToken.START_OBJECT) {
+            throw new IOException("Expected an object with " + PAYLOAD_FIELD + "/" + QUERIES_FIELD
+                    + " but found " + token + " at " + parser.currentLocation());
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (value == JsonToken.START_OBJECT && PAYLOAD_FIELD.equals(field)) {
+                readPayloads(parser, builder);
+            } else if (value == JsonToken.START_OBJECT && QUERIES_FIELD.equals(field)) {
+                readQueries(parser, builder);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void readPayloads(JsonParser parser, AdSnapshotBuilder builder) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String adId = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY) {
+                // Structured payloads are kept as their JSON text
+                builder.putPayload(adId, objectMapper.readTree(parser).toString());
+            } else if (value != JsonToken.VALUE_NULL) {
+                builder.putPayload(adId, parser.getValueAsString());
+            }
+        }
+    }
+
+    private void readQueries(JsonParser parser, AdSnapshotBuilder builder) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String adId = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (value != JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                continue;
+            }
+            // Register the ad even if its query array turns out to be empty
+            builder.addQueries(adId, Collections.emptyList());
+            JsonToken query;
+            while ((query = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (query == JsonToken.VALUE_NULL) {
+                    continue;
+                }
+                if (query == JsonToken.START_OBJECT || query == JsonToken.START_ARRAY) {
+                    throw new IOException("Expected query strings for ad " + adId
+                            + " but found " + query + " at " + parser.currentLocation());
+                }
+                builder.addQuery(adId, parser.getValueAsString());
+            }
+            builder.checkHeapBudget();
+        }
+    }
+}
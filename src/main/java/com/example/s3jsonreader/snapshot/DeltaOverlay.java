@@ -0,0 +1,216 @@
+package com.example.s3jsonreader.snapshot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * The changes of every delta applied on top of a base snapshot. The base (ad id array, ordinal
+ * index, payload store and query index) is shared untouched; the overlay only holds the ads and
+ * queries the deltas touched. Applying another delta copies the overlay, never the base, so the
+ * cost is proportional to the changes accumulated since the base was loaded.
+ *
+ * <p>Ads keep their base ordinal when they are updated, deleted or re-added; new ads get ordinals
+ * after the base ones. The posting array of every touched query is rebuilt in full.
+ */
+final class DeltaOverlay {
+
+    // HashMap node and its table slot
+    private static final long MAP_ENTRY = 40;
+    // AdState object
+    private static final long AD_STATE = 32;
+
+    /**
+     * State of a touched ad. A payload still held by the base payload store is not copied.
+     */
+    static final class AdState {
+        final int ordinal;
+        final String payload;
+        final boolean basePayload;
+        final Set<String> queries;
+        final boolean deleted;
+
+        AdState(int ordinal, String payload, boolean basePayload, Set<String> queries, boolean deleted) {
+            this.ordinal = ordinal;
+            this.payload = payload;
+            this.basePayload = basePayload;
+            this.queries = queries;
+            this.deleted = deleted;
+        }
+
+        boolean hasPayload() {
+            return !deleted && (basePayload || payload != null);
+        }
+
+        Set<String> liveQueries() {
+            return deleted || queries == null ? Collections.emptySet() : queries;
+        }
+    }
+
+    final Map<String, AdState> ads;
+    final String[] addedAdIds;
+    final Map<String, int[]> postings;
+    final int payloadCount;
+    final int adCount;
+    final int queryCount;
+    final int deltaCount;
+
+    private DeltaOverlay(Map<String, AdState> ads, String[] addedAdIds, Map<String, int[]> postings,
+                         int payloadCount, int adCount, int queryCount, int deltaCount) {
+        this.ads = ads;
+        this.addedAdIds = addedAdIds;
+        this.postings = postings;
+        this.payloadCount = payloadCount;
+        this.adCount = adCount;
+        this.queryCount = queryCount;
+        this.deltaCount = deltaCount;
+    }
+
+    /**
+     * @return Rough heap retained by the touched ads, their own payloads and query sets, and the
+     * rewritten postings; base payloads and query sets still shared with the base are not counted
+     */
+    long estimatedHeapBytes() {
+        long bytes = HeapEstimate.ofStrings(addedAdIds, addedAdIds.length);
+        for (Map.Entry<String, AdState> entry : ads.entrySet()) {
+            AdState state = entry.getValue();
+            bytes += MAP_ENTRY + AD_STATE + HeapEstimate.ofString(entry.getKey().length());
+            if (state.payload != null) {
+                bytes += HeapEstimate.ofString(state.payload.length());
+            }
+            if (state.queries != null) {
+                bytes += HeapEstimate.QUERY_SET + HeapEstimate.ofArray(state.queries.size(), Integer.BYTES);
+            }
+        }
+        for (Map.Entry<String, int[]> entry : postings.entrySet()) {
+            bytes += MAP_ENTRY + HeapEstimate.ofString(entry.getKey().length())
+                    + HeapEstimate.ofArray(entry.getValue().length, Integer.BYTES);
+        }
+        return bytes;
+    }
+
+    /**
+     * Folds the delta into the overlay of {@code current}, which is left unchanged.
+     */
+    static DeltaOverlay apply(AdSnapshot current, AdDelta delta) {
+        Applier applier = new Applier(current);
+        for (String adId : delta.getDeletes()) {
+            applier.delete(adId);
+        }
+        AdSnapshot upserts = delta.getUpserts();
+        for (int ordinal = 0; ordinal < upserts.adCount(); ordinal++) {
+            String adId = upserts.getAdId(ordinal);
+            applier.upsert(adId, upserts.payloadAt(ordinal), upserts.getQueries(adId));
+        }
+        return applier.finish();
+    }
+
+    private static final class Applier {
+
+        private final AdSnapshot current;
+        private final DeltaOverlay previous;
+        private final Map<String, AdState> ads;
+        private final List<String> addedAdIds;
+        // Per touched query: ordinal -> whether the ad now matches it
+        private final Map<String, Map<Integer, Boolean>> membershipChanges = new HashMap<>();
+        private int payloadCount;
+        private int adCount;
+
+        private Applier(AdSnapshot current) {
+            this.current = current;
+            this.previous = current.overlay();
+            this.ads = previous != null ? new HashMap<>(previous.ads) : new HashMap<>();
+            this.addedAdIds = previous != null ? new ArrayList<>(Arrays.asList(previous.addedAdIds)) : new ArrayList<>();
+            this.payloadCount = current.size();
+            this.adCount = current.adCount();
+        }
+
+        void delete(String adId) {
+            AdState old = stateOf(adId);
+            if (old != null && !old.deleted) {
+                update(adId, old, new AdState(old.ordinal, null, false, null, true));
+            }
+        }
+
+        void upsert(String adId, String payload, Set<String> queries) {
+            AdState old = stateOf(adId);
+            int ordinal;
+            AdState kept = null;
+            if (old == null) {
+                ordinal = current.baseOrdinalCount() + addedAdIds.size();
+                addedAdIds.add(adId);
+            } else {
+                ordinal = old.ordinal;
+                kept = old.deleted ? null : old;
+            }
+
+            AdState next = new AdState(ordinal,
+                    payload != null ? payload : kept != null ? kept.payload : null,
+                    payload == null && kept != null && kept.basePayload,
+                    queries != null ? queries : kept != null ? kept.queries : null,
+                    false);
+            update(adId, old, next);
+        }
+
+        /**
+         * @return The state of the ad as of the changes applied so far, or null if it never existed
+         */
+        private AdState stateOf(String adId) {
+            AdState state = ads.get(adId);
+            if (state != null) {
+                return state;
+            }
+            int ordinal = current.baseOrdinalOf(adId);
+            if (ordinal < 0) {
+                return null;
+            }
+            // Ads with a payload occupy the leading base ordinals
+            return new AdState(ordinal, null, ordinal < current.basePayloadCount(), current.getQueries(adId), false);
+        }
+
+        private void update(String adId, AdState old, AdState next) {
+            boolean oldLive = old != null && !old.deleted;
+            payloadCount += (next.hasPayload() ? 1 : 0) - (old != null && old.hasPayload() ? 1 : 0);
+            adCount += (next.deleted ? 0 : 1) - (oldLive ? 1 : 0);
+
+            Set<String> oldQueries = old != null ? old.liveQueries() : Collections.emptySet();
+            Set<String> newQueries = next.liveQueries();
+            for (String query : oldQueries) {
+                if (!newQueries.contains(query)) {
+                    membershipChanges.computeIfAbsent(query, q -> new HashMap<>()).put(next.ordinal, Boolean.FALSE);
+                }
+            }
+            for (String query : newQueries) {
+                if (!oldQueries.contains(query)) {
+                    membershipChanges.computeIfAbsent(query, q -> new HashMap<>()).put(next.ordinal, Boolean.TRUE);
+                }
+            }
+            ads.put(adId, next);
+        }
+
+        DeltaOverlay finish() {
+            Map<String, int[]> postings = previous != null ? new HashMap<>(previous.postings) : new HashMap<>();
+            int queryCount = current.queryCount();
+            for (Map.Entry<String, Map<Integer, Boolean>> entry : membershipChanges.entrySet()) {
+                Map<Integer, Boolean> changes = entry.getValue();
+                int[] before = current.getAdOrdinalsForQuery(entry.getKey());
+                int[] after = IntStream.concat(
+                                Arrays.stream(before).filter(ordinal -> changes.get(ordinal) != Boolean.FALSE),
+                                changes.entrySet().stream().filter(Map.Entry::getValue).mapToInt(Map.Entry::getKey))
+                        .sorted()
+                        .distinct()
+                        .toArray();
+                queryCount += (after.length > 0 ? 1 : 0) - (before.length > 0 ? 1 : 0);
+                postings.put(entry.getKey(), after);
+            }
+
+            return new DeltaOverlay(ads, addedAdIds.toArray(new String[0]), postings,
+                    payloadCount, adCount, queryCount, previous != null ? previous.deltaCount + 1 : 1);
+        }
+    }
+}
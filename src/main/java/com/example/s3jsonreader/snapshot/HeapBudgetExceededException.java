@@ -0,0 +1,28 @@
+package com.example.s3jsonreader.snapshot;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a snapshot being built would take more heap than its {@link SnapshotHeapBudget} allows.
+ * The build is abandoned and the snapshot currently served is kept.
+ */
+public class HeapBudgetExceededException extends IOException {
+
+    private final long requiredBytes;
+    private final long limitBytes;
+
+    public HeapBudgetExceededException(long requiredBytes, long limitBytes) {
+        super("Snapshot needs an estimated " + requiredBytes + " bytes of heap, over the budget of "
+                + limitBytes + " bytes");
+        this.requiredBytes = requiredBytes;
+        this.limitBytes = limitBytes;
+    }
+
+    public long getRequiredBytes() {
+        return requiredBytes;
+    }
+
+    public long getLimitBytes() {
+        return limitBytes;
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.s3jsonreader.snapshot;
+
+/**
+ * Retained-size arithmetic for a 64-bit JVM with compressed oops and compact strings: 12-byte
+ * object headers, 16-byte array headers, 4-byte references and 8-byte alignment. Strings are
+ * assumed to be Latin-1, one byte per char. Good enough to compare snapshots against a budget,
+ * not an exact measurement.
+ */
+final class HeapEstimate {
+
+    static final long REFERENCE = 4;
+    // Header, hash, coder, flags and the value reference
+    static final long STRING = 24;
+    // Header and two references
+    static final long QUERY_SET = 24;
+
+    private HeapEstimate() {
+    }
+
+    static long ofArray(long length, long elementBytes) {
+        return align(16 + length * elementBytes);
+    }
+
+    static long ofString(int length) {
+        return STRING + ofArray(length, 1);
+    }
+
+    static long ofStrings(String[] strings, int count) {
+        long bytes = ofArray(strings.length, REFERENCE);
+        for (int i = 0; i < count; i++) {
+            if (strings[i] != null) {
+                bytes += ofString(strings[i].length());
+            }
+        }
+        return bytes;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.s3jsonreader.snapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps payloads as regular Strings on the Java heap.
+ */
+public final class HeapPayloadStore implements PayloadStore {
+
+    private final String[] payloadsByOrdinal;
+    private final int size;
+    private final long storedBytes;
+    private final long heapBytes;
+
+    private HeapPayloadStore(String[] payloadsByOrdinal, int size, long storedBytes) {
+        this.payloadsByOrdinal = payloadsByOrdinal;
+        this.size = size;
+        this.storedBytes = storedBytes;
+        this.heapBytes = HeapEstimate.ofArray(payloadsByOrdinal.length, HeapEstimate.REFERENCE)
+                + size * HeapEstimate.STRING + storedBytes + size * 16L;
+    }
+
+    public static HeapPayloadStore empty() {
+        return new HeapPayloadStore(new String[0], 0, 0);
+    }
+
+    /**
+     * Decodes every payload of another store onto the heap.
+     */
+    static HeapPayloadStore copyOf(PayloadStore source, int adCount) {
+        String[] payloadsByOrdinal = new String[adCount];
+        int size = 0;
+        long storedBytes = 0;
+        for (int ordinal = 0; ordinal < adCount; ordinal++) {
+            String payload = source.get(ordinal);
+            if (payload != null) {
+                payloadsByOrdinal[ordinal] = payload;
+                size++;
+                storedBytes += payload.length();
+            }
+        }
+        return new HeapPayloadStore(payloadsByOrdinal, size, storedBytes);
+    }
+
+    public static Writer writer() {
+        return new HeapWriter();
+    }
+
+    @Override
+    public String get(int ordinal) {
+        return payloadsByOrdinal[ordinal];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long storedBytes() {
+        return storedBytes;
+    }
+
+    /**
+     * Counts every payload as a Latin-1 String; payloads shared between ordinals are counted once per ordinal
+     */
+    @Override
+    public long heapBytes() {
+        return heapBytes;
+    }
+
+    @Override
+    public void close() {
+        // Nothing outside the heap
+    }
+
+    private static final class HeapWriter implements Writer {
+
+        private List<String> payloads = new ArrayList<>();
+
+        @Override
+        public synchronized long append(String payload) {
+            payloads.add(payload);
+            return payloads.size() - 1;
+        }
+
+        @Override
+        public boolean keepsPayloadsOnHeap() {
+            return true;
+        }
+
+        @Override
+        public synchronized PayloadStore finish(long[] handlesByOrdinal) {
+            String[] payloadsByOrdinal = new String[handlesByOrdinal.length];
+            int size = 0;
+            long storedBytes = 0;
+            for (int ordinal = 0; ordinal < handlesByOrdinal.length; ordinal++) {
+                long handle = handlesByOrdinal[ordinal];
+                if (handle != NO_PAYLOAD) {
+                    String payload = payloads.get((int) handle);
+                    payloadsByOrdinal[ordinal] = payload;
+                    size++;
+                    storedBytes += payload.length();
+                }
+            }
+            payloads = null;
+            return new HeapPayloadStore(payloadsByOrdinal, size, storedBytes);
+        }
+
+        @Override
+        public synchronized void abort() {
+            payloads = null;
+        }
+    }
+}
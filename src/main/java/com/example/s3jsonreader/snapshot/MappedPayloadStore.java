@@ -0,0 +1,248 @@
+package com.example.s3jsonreader.snapshot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.Cleaner;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps payloads as UTF-8 bytes in a memory-mapped file, so they live in the page cache
+ * instead of the Java heap. Each payload is stored as a 4-byte length followed by its bytes;
+ * the only heap cost is one long offset per ad. Payloads are decoded on demand.
+ *
+ * <p>The payload region is split into segments of at most {@link #SEGMENT_SIZE} bytes (the limit
+ * of a single mapping) and no payload crosses a segment boundary.
+ *
+ * <p>Closing a store deletes its file but cannot unmap it: Java only unmaps a buffer when it is
+ * garbage collected, and unmapping earlier would crash a reader still touching it. Until then the
+ * mapping keeps its address space and page cache; {@link #closedMappedBytes()} reports how much.
+ */
+public final class MappedPayloadStore implements PayloadStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedPayloadStore.class);
+
+    static final int SEGMENT_SIZE = 1 << 30;
+    private static final int LENGTH_PREFIX = Integer.BYTES;
+
+    private static final Cleaner CLEANER = Cleaner.create();
+    // Bytes mapped by closed stores that are not garbage collected yet
+    private static final AtomicLong CLOSED_MAPPED_BYTES = new AtomicLong();
+
+    private final Path file;
+    private final boolean deleteOnClose;
+    private final MappedByteBuffer[] segments;
+    private final long[] offsetsByOrdinal;
+    private final int size;
+    private final long storedBytes;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private MappedPayloadStore(Path file, boolean deleteOnClose, MappedByteBuffer[] segments,
+                               long[] offsetsByOrdinal, int size, long storedBytes) {
+        this.file = file;
+        this.deleteOnClose = deleteOnClose;
+        this.segments = segments;
+        this.offsetsByOrdinal = offsetsByOrdinal;
+        this.size = size;
+        this.storedBytes = storedBytes;
+    }
+
+    /**
+     * @param directory Directory for the backing file, which is deleted when the store is closed
+     */
+    public static Writer writer(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        return new MappedWriter(Files.createTempFile(directory, "ad-payloads-", ".bin"));
+    }
+
+    /**
+     * Maps a payload region written by a {@link RecordWriter} into a store.
+     *
+     * @param file File containing the region
+     * @param regionStart Position of the region in the file
+     * @param regionLength Length of the region
+     * @param offsetsByOrdinal Offset of each ad's record relative to the region start, or {@link Writer#NO_PAYLOAD}
+     * @param deleteOnClose Whether closing the store deletes the file
+     */
+    static MappedPayloadStore map(Path file, long regionStart, long regionLength,
+                                  long[] offsetsByOrdinal, boolean deleteOnClose) throws IOException {
+        int segmentCount = (int) ((regionLength + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+        MappedByteBuffer[] segments = new MappedByteBuffer[segmentCount];
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (int i = 0; i < segmentCount; i++) {
+                long start = (long) i * SEGMENT_SIZE;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, regionStart + start,
+                        Math.min(SEGMENT_SIZE, regionLength - start));
+            }
+        }
+
+        int size = 0;
+        for (long offset : offsetsByOrdinal) {
+            if (offset != Writer.NO_PAYLOAD) {
+                size++;
+            }
+        }
+        logger.debug("Mapped {} payloads ({} bytes in {} segments) from {}", size, regionLength, segmentCount, file);
+        return new MappedPayloadStore(file, deleteOnClose, segments, offsetsByOrdinal, size, regionLength);
+    }
+
+    @Override
+    public String get(int ordinal) {
+        long offset = offsetsByOrdinal[ordinal];
+        if (offset == Writer.NO_PAYLOAD) {
+            return null;
+        }
+        MappedByteBuffer segment = segments[(int) (offset / SEGMENT_SIZE)];
+        int position = (int) (offset % SEGMENT_SIZE);
+        byte[] bytes = new byte[segment.getInt(position)];
+        segment.get(position + LENGTH_PREFIX, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long storedBytes() {
+        return storedBytes;
+    }
+
+    /**
+     * Counts the offsets; the payloads themselves live in the mapped file
+     */
+    @Override
+    public long heapBytes() {
+        return HeapEstimate.ofArray(offsetsByOrdinal.length, Long.BYTES)
+                + HeapEstimate.ofArray(segments.length, HeapEstimate.REFERENCE) + segments.length * 64L;
+    }
+
+    /**
+     * @return Bytes still mapped by closed stores, released once the stores are garbage collected
+     */
+    public static long closedMappedBytes() {
+        return CLOSED_MAPPED_BYTES.get();
+    }
+
+    /**
+     * Deletes the backing file if the store owns it. Existing mappings stay readable until
+     * they are garbage collected, and are counted in {@link #closedMappedBytes()} until then.
+     * Closing more than once has no effect.
+     */
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        long mappedBytes = storedBytes;
+        CLOSED_MAPPED_BYTES.addAndGet(mappedBytes);
+        // The segments are only reachable through the store, so they are unmapped together with it
+        CLEANER.register(this, () -> CLOSED_MAPPED_BYTES.addAndGet(-mappedBytes));
+        if (deleteOnClose) {
+            deleteQuietly(file);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Failed to delete payload file {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Appends length-prefixed payload records to a stream, padding so that no record
+     * crosses a segment boundary. Offsets are relative to the first record written.
+     */
+    static final class RecordWriter {
+
+        private final DataOutputStream out;
+        private long position;
+
+        RecordWriter(DataOutputStream out) {
+            this.out = out;
+        }
+
+        long append(String payload) throws IOException {
+            byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+            int recordSize = LENGTH_PREFIX + bytes.length;
+            if (recordSize > SEGMENT_SIZE) {
+                throw new IOException("Payload of " + bytes.length + " bytes exceeds the maximum of "
+                        + (SEGMENT_SIZE - LENGTH_PREFIX) + " bytes");
+            }
+            long remaining = SEGMENT_SIZE - position % SEGMENT_SIZE;
+            if (recordSize > remaining) {
+                // Pad to the next segment so the record can be read from a single mapping
+                for (long i = 0; i < remaining; i++) {
+                    out.write(0);
+                }
+                position += remaining;
+            }
+            long offset = position;
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            position += recordSize;
+            return offset;
+        }
+
+        /**
+         * @return Number of bytes written so far, including padding
+         */
+        long length() {
+            return position;
+        }
+    }
+
+    private static final class MappedWriter implements Writer {
+
+        private final Path file;
+        private final DataOutputStream out;
+        private final RecordWriter records;
+
+        private MappedWriter(Path file) throws IOException {
+            this.file = file;
+            OutputStream fileOut = Files.newOutputStream(file, StandardOpenOption.WRITE);
+            this.out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16));
+            this.records = new RecordWriter(out);
+        }
+
+        @Override
+        public synchronized long append(String payload) throws IOException {
+            return records.append(payload);
+        }
+
+        @Override
+        public boolean keepsPayloadsOnHeap() {
+            return false;
+        }
+
+        @Override
+        public synchronized PayloadStore finish(long[] handlesByOrdinal) throws IOException {
+            out.close();
+            return map(file, 0, records.length(), handlesByOrdinal, true);
+        }
+
+        @Override
+        public synchronized void abort() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                logger.debug("Failed to close payload file {}: {}", file, e.getMessage());
+            }
+            deleteQuietly(file);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.s3jsonreader.snapshot;
+
+import java.io.IOException;
+
+/**
+ * Holds the ad payloads of a snapshot, addressed by ad ordinal.
+ * Implementations are immutable once built and safe for concurrent readers.
+ */
+public interface PayloadStore extends AutoCloseable {
+
+    /**
+     * @param ordinal The ad ordinal
+     * @return The payload of the ad, or null if the ad has no payload
+     */
+    String get(int ordinal);
+
+    /**
+     * @return Number of ads that have a payload
+     */
+    int size();
+
+    /**
+     * @return Number of payload bytes held by the store
+     */
+    long storedBytes();
+
+    /**
+     * @return Estimated Java heap retained by the store; payloads held outside the heap are not counted
+     */
+    long heapBytes();
+
+    /**
+     * Releases resources held outside the Java heap. Readers that already obtained
+     * the store may keep reading until they drop their reference.
+     */
+    @Override
+    void close();
+
+    /**
+     * Collects payloads while a snapshot is being built. Payloads are appended in arrival order
+     * and identified by an opaque handle; {@link #finish(long[])} lays them out by ordinal.
+     * {@link #append(String)} may be called from several threads.
+     */
+    interface Writer {
+
+        long NO_PAYLOAD = -1L;
+
+        long append(String payload) throws IOException;
+
+        /**
+         * @return true if appended payloads are retained on the Java heap until the store is closed
+         */
+        boolean keepsPayloadsOnHeap();
+
+        /**
+         * @param handlesByOrdinal Handle returned by {@link #append(String)} for each ordinal,
+         *                         or {@link #NO_PAYLOAD}
+         */
+        PayloadStore finish(long[] handlesByOrdinal) throws IOException;
+
+        /**
+         * Discards everything written so far, used when a build is aborted.
+         */
+        void abort();
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.s3jsonreader.snapshot;
+
+/**
+ * The string table of a snapshot's queries: every distinct query string is held once and
+ * identified by a dense int id, so per-ad query sets and the inverted index store ids instead
+ * of strings.
+ */
+final class QueryDictionary {
+
+    static final QueryDictionary EMPTY = new QueryDictionary(new String[0]);
+
+    private final String[] queriesById;
+    private final StringOrdinalIndex index;
+
+    /**
+     * @param queriesById Distinct query strings, indexed by id
+     */
+    QueryDictionary(String[] queriesById) {
+        this.queriesById = queriesById;
+        this.index = new StringOrdinalIndex(queriesById);
+    }
+
+    /**
+     * @return The id of the query, or -1 if no ad of the snapshot has it
+     */
+    int idOf(String query) {
+        return index.ordinalOf(query);
+    }
+
+    String queryOf(int id) {
+        return queriesById[id];
+    }
+
+    int size() {
+        return queriesById.length;
+    }
+
+    long estimatedHeapBytes() {
+        return HeapEstimate.ofStrings(queriesById, queriesById.length) + index.slotHeapBytes();
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.s3jsonreader.snapshot;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Unmodifiable query set of one ad, stored as a sorted array of ids into the snapshot's
+ * {@link QueryDictionary}. Containment is a dictionary probe plus a binary search, and
+ * iteration decodes the ids back to the shared query strings.
+ */
+final class QuerySet extends AbstractSet<String> {
+
+    private final QueryDictionary dictionary;
+    private final int[] ids;
+
+    /**
+     * @param ids Sorted, distinct query ids
+     */
+    QuerySet(QueryDictionary dictionary, int[] ids) {
+        this.dictionary = dictionary;
+        this.ids = ids;
+    }
+
+    int[] ids() {
+        return ids;
+    }
+
+    boolean containsId(int id) {
+        return Arrays.binarySearch(ids, id) >= 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof String) || ids.length == 0) {
+            return false;
+        }
+        int id = dictionary.idOf((String) o);
+        return id >= 0 && containsId(id);
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < ids.length;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return dictionary.queryOf(ids[next++]);
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+}
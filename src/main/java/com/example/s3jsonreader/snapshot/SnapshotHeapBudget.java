@@ -0,0 +1,71 @@
+package com.example.s3jsonreader.snapshot;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Heap a snapshot under construction may claim, on top of what is already in use (typically the
+ * snapshot currently served, which stays reachable until the new one replaces it). Builders reserve
+ * their estimated size in chunks as they grow, so an oversized dataset fails while it is parsed
+ * instead of exhausting the heap. A builder and its shard builders share one budget.
+ */
+public final class SnapshotHeapBudget {
+
+    public static final SnapshotHeapBudget UNLIMITED = new SnapshotHeapBudget(0, 0);
+
+    private final long limitBytes;
+    private final AtomicLong reservedBytes;
+
+    /**
+     * @param limitBytes Total the heap in use and the new snapshot may reach, or 0 for no limit
+     * @param inUseBytes Heap already taken by snapshots that stay reachable during the build
+     */
+    public SnapshotHeapBudget(long limitBytes, long inUseBytes) {
+        this.limitBytes = limitBytes;
+        this.reservedBytes = new AtomicLong(inUseBytes);
+    }
+
+    public boolean isLimited() {
+        return limitBytes > 0;
+    }
+
+    public long getLimitBytes() {
+        return limitBytes;
+    }
+
+    /**
+     * @return Heap in use plus everything reserved so far
+     */
+    public long getReservedBytes() {
+        return reservedBytes.get();
+    }
+
+    /**
+     * @throws HeapBudgetExceededException if the reservation takes the total past the limit
+     */
+    void reserve(long bytes) throws HeapBudgetExceededException {
+        if (!isLimited()) {
+            return;
+        }
+        long total = reservedBytes.addAndGet(bytes);
+        if (total > limitBytes) {
+            throw new HeapBudgetExceededException(total, limitBytes);
+        }
+    }
+
+    /**
+     * Checks a finished snapshot against the budget, with its full estimate in place of the
+     * reservations made while it was built.
+     *
+     * @param inUseBytes Heap taken by snapshots that stay reachable until this one is published
+     * @throws HeapBudgetExceededException if the snapshot does not fit
+     */
+    public void check(AdSnapshot snapshot, long inUseBytes) throws HeapBudgetExceededException {
+        if (!isLimited()) {
+            return;
+        }
+        long total = inUseBytes + snapshot.estimatedHeapBytes();
+        if (total > limitBytes) {
+            throw new HeapBudgetExceededException(total, limitBytes);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.s3jsonreader.snapshot;
+
+import com.fasterxml.jackson.core.JsonPointer;
+
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * A JSON Pointer (RFC 6901) into the merged document element, compiled against the snapshot's
+ * layout so that resolving it is a direct index lookup instead of a walk over the whole document:
+ * {@code /adIdToPayload/ad_1} is one payload lookup, {@code /adIdToQueries/ad_1/0} one query set lookup.
+ *
+ * <p>Supported paths: {@code ""} (the whole element), {@code /adIdToPayload},
+ * {@code /adIdToPayload/<adId>}, {@code /adIdToQueries}, {@code /adIdToQueries/<adId>} and
+ * {@code /adIdToQueries/<adId>/<index>}. Instances are immutable and can be shared.
+ */
+public final class SnapshotPath {
+
+    private static final String PAYLOAD_FIELD = "adIdToPayload";
+    private static final String QUERIES_FIELD = "adIdToQueries";
+
+    private enum Target {
+        ELEMENT, PAYLOADS, PAYLOAD, QUERY_MAP, QUERIES, QUERY
+    }
+
+    private final String expression;
+    private final Target target;
+    private final String adId;
+    private final int index;
+
+    private SnapshotPath(String expression, Target target, String adId, int index) {
+        this.expression = expression;
+        this.target = target;
+        this.adId = adId;
+        this.index = index;
+    }
+
+    /**
+     * @param expression A JSON Pointer such as {@code /adIdToPayload/ad_1}; {@code ~1} and {@code ~0} escape "/" and "~"
+     * @throws IllegalArgumentException if the pointer is malformed or cannot match anything in the document
+     */
+    public static SnapshotPath compile(String expression) {
+        if (expression == null) {
+            throw new IllegalArgumentException("Path cannot be null");
+        }
+        JsonPointer pointer = JsonPointer.compile(expression);
+        if (pointer.matches()) {
+            return new SnapshotPath(expression, Target.ELEMENT, null, -1);
+        }
+
+        String field = pointer.getMatchingProperty();
+        JsonPointer rest = pointer.tail();
+        if (!PAYLOAD_FIELD.equals(field) && !QUERIES_FIELD.equals(field)) {
+            throw new IllegalArgumentException("Unknown field in path " + expression + ": " + field);
+        }
+        boolean payloads = PAYLOAD_FIELD.equals(field);
+        if (rest.matches()) {
+            return new SnapshotPath(expression, payloads ? Target.PAYLOADS : Target.QUERY_MAP, null, -1);
+        }
+
+        String adId = rest.getMatchingProperty();
+        rest = rest.tail();
+        if (rest.matches()) {
+            return new SnapshotPath(expression, payloads ? Target.PAYLOAD : Target.QUERIES, adId, -1);
+        }
+        if (payloads) {
+            throw new IllegalArgumentException("Payloads have no children, path: " + expression);
+        }
+        if (rest.getMatchingIndex() < 0 || !rest.tail().matches()) {
+            throw new IllegalArgumentException("Expected a query index at the end of path " + expression);
+        }
+        return new SnapshotPath(expression, Target.QUERY, adId, rest.getMatchingIndex());
+    }
+
+    /**
+     * @return The value at this path, or null if nothing is there. Whole maps are returned as the
+     * same read-only views {@link AdSnapshot#asPojo()} exposes; nothing is copied.
+     */
+    public Object resolve(AdSnapshot snapshot) {
+        switch (target) {
+            case ELEMENT:
+                return snapshot.asPojo();
+            case PAYLOADS:
+                return snapshot.asPojo().getAdIdToPayload();
+            case PAYLOAD:
+                return snapshot.getPayload(adId);
+            case QUERY_MAP:
+                return snapshot.asPojo().getAdIdToQueries();
+            case QUERIES:
+                return snapshot.getQueries(adId);
+            case QUERY:
+                return elementAt(snapshot.getQueries(adId), index);
+            default:
+                throw new IllegalStateException("Unexpected target " + target);
+        }
+    }
+
+    private static String elementAt(Set<String> queries, int index) {
+        if (queries == null || index >= queries.size()) {
+            return null;
+        }
+        Iterator<String> iterator = queries.iterator();
+        for (int i = 0; i < index; i++) {
+            iterator.next();
+        }
+        return iterator.next();
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.s3jsonreader.snapshot;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash index from a string to its position in an array of distinct strings,
+ * used for both ad ids (ad ordinals) and queries (query ids). The table is a single int array
+ * holding {@code ordinal + 1} per slot (0 marks an empty slot); keys are not copied but
+ * compared against the indexed array, so there are no per-entry objects.
+ * Linear probing at a load factor of at most 0.5 keeps probe sequences short.
+ * An index created empty grows as strings are {@link #add added}, which is how builders
+ * intern ad ids and queries during ingestion; an index over an existing array is used as is.
+ */
+final class StringOrdinalIndex {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private String[] keysByOrdinal;
+    private int size;
+    private int[] slots;
+    private int mask;
+
+    /**
+     * Indexes the given distinct strings, each under its position in the array.
+     */
+    StringOrdinalIndex(String[] keysByOrdinal) {
+        this.keysByOrdinal = keysByOrdinal;
+        this.size = keysByOrdinal.length;
+        rehash(Integer.highestOneBit(Math.max(2, size) * 2 - 1) << 1);
+    }
+
+    /**
+     * Creates an empty index that assigns ordinals in {@link #add} order.
+     */
+    StringOrdinalIndex() {
+        this.keysByOrdinal = new String[INITIAL_CAPACITY / 2];
+        rehash(INITIAL_CAPACITY);
+    }
+
+    /**
+     * @param key The string to look up
+     * @return The ordinal of the string, or -1 if it is not in the array
+     */
+    int ordinalOf(String key) {
+        int slot = spread(key.hashCode()) & mask;
+        int entry;
+        while ((entry = slots[slot]) != 0) {
+            if (keysByOrdinal[entry - 1].equals(key)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * @return The ordinal of the string, assigning the next one if it is not indexed yet
+     */
+    int add(String key) {
+        int slot = spread(key.hashCode()) & mask;
+        int entry;
+        while ((entry = slots[slot]) != 0) {
+            if (keysByOrdinal[entry - 1].equals(key)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (size == keysByOrdinal.length) {
+            keysByOrdinal = Arrays.copyOf(keysByOrdinal, Math.max(INITIAL_CAPACITY / 2, size * 2));
+        }
+        keysByOrdinal[size] = key;
+        if ((size + 1) * 2 > slots.length) {
+            size++;
+            rehash(slots.length << 1);
+        } else {
+            slots[slot] = ++size;
+        }
+        return size - 1;
+    }
+
+    String keyOf(int ordinal) {
+        return keysByOrdinal[ordinal];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return Estimated heap taken by the hash slots; the indexed strings are owned by the caller
+     */
+    long slotHeapBytes() {
+        return HeapEstimate.ofArray(slots.length, Integer.BYTES);
+    }
+
+    /**
+     * @return A copy of the indexed strings, by ordinal
+     */
+    String[] toArray() {
+        return Arrays.copyOf(keysByOrdinal, size);
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        mask = capacity - 1;
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            int slot = spread(keysByOrdinal[ordinal].hashCode()) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = ordinal + 1;
+        }
+    }
+
+    private static int spread(int hash) {
+        return (hash ^ (hash >>> 16)) * 0x9E3779B9;
+    }
+}
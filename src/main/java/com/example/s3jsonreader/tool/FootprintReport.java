@@ -0,0 +1,96 @@
+package com.example.s3jsonreader.tool;
+
+import com.example.s3jsonreader.pojo.POJO;
+import com.example.s3jsonreader.snapshot.AdSnapshot;
+import com.example.s3jsonreader.snapshot.AdSnapshotBuilder;
+
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Measures the retained heap of the same synthetic dataset held as a bound {@link POJO}
+ * ({@code HashMap}/{@code HashSet} based) and as an {@link AdSnapshot} with heap payloads.
+ * Retained size is the used heap after a full GC with the structure reachable minus the used
+ * heap before it was built, so run it with a heap large enough for the larger of the two and
+ * no other load.
+ *
+ * <pre>
+ * java -Xmx4g -cp s3-json-reader-1.0.0-exec.jar -Dloader.main=com.example.s3jsonreader.tool.FootprintReport \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher 100000 1000000
+ * </pre>
+ */
+public final class FootprintReport {
+
+    private FootprintReport() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int[] adCounts = args.length > 0
+                ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[]{100_000, 1_000_000};
+
+        System.out.printf("%12s %14s %14s %12s %12s %8s%n",
+                "ads", "pojo bytes", "snapshot bytes", "pojo B/ad", "snap B/ad", "ratio");
+        for (int adCount : adCounts) {
+            SyntheticAds ads = new SyntheticAds(adCount);
+
+            long before = usedHeap();
+            POJO pojo = toPojo(ads);
+            long pojoBytes = usedHeap() - before;
+            Reference.reachabilityFence(pojo);
+            pojo = null;
+
+            before = usedHeap();
+            AdSnapshot snapshot = toSnapshot(ads);
+            long snapshotBytes = usedHeap() - before;
+            Reference.reachabilityFence(snapshot);
+            snapshot.close();
+            snapshot = null;
+
+            System.out.printf("%12d %14d %14d %12d %12d %8.2f%n", adCount, pojoBytes, snapshotBytes,
+                    pojoBytes / adCount, snapshotBytes / adCount, (double) pojoBytes / snapshotBytes);
+        }
+    }
+
+    static POJO toPojo(SyntheticAds ads) {
+        Map<String, String> adIdToPayload = new HashMap<>();
+        Map<String, Set<String>> adIdToQueries = new HashMap<>();
+        for (int i = 0; i < ads.getAdCount(); i++) {
+            adIdToPayload.put(ads.adId(i), ads.payload(i));
+            adIdToQueries.put(ads.adId(i), new HashSet<>(ads.queries(i)));
+        }
+        POJO pojo = new POJO();
+        pojo.setAdIdToPayload(adIdToPayload);
+        pojo.setAdIdToQueries(adIdToQueries);
+        return pojo;
+    }
+
+    static AdSnapshot toSnapshot(SyntheticAds ads) throws IOException {
+        AdSnapshotBuilder builder = new AdSnapshotBuilder();
+        for (int i = 0; i < ads.getAdCount(); i++) {
+            builder.putPayload(ads.adId(i), ads.payload(i));
+            builder.addQueries(ads.adId(i), ads.queries(i));
+        }
+        return builder.build();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // Repeat until a collection no longer frees anything, so only reachable objects are counted
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            long now = runtime.totalMemory() - runtime.freeMemory();
+            if (now >= used) {
+                return now;
+            }
+            used = now;
+        }
+        return used;
+    }
+}
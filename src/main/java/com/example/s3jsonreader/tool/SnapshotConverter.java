@@ -0,0 +1,86 @@
+package com.example.s3jsonreader.tool;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Offline converter between the JSON dataset document and its Smile encoding, which the loader
+ * reads interchangeably. The document is copied token by token, so files of any size convert in
+ * constant memory. Upload the output under a {@code .smile} key (or in place of the JSON object).
+ *
+ * <pre>
+ * java -cp s3-json-reader-1.0.0-exec.jar -Dloader.main=com.example.s3jsonreader.tool.SnapshotConverter \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher data.json data.smile
+ * </pre>
+ */
+public final class SnapshotConverter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private SnapshotConverter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean toJson = args.length == 3 && "--to-json".equals(args[0]);
+        if (args.length != 2 && !toJson) {
+            System.err.println("Usage: SnapshotConverter [--to-json] <input> <output>");
+            System.exit(2);
+        }
+        Path input = Paths.get(args[args.length - 2]);
+        Path output = Paths.get(args[args.length - 1]);
+
+        long start = System.nanoTime();
+        if (toJson) {
+            smileToJson(input, output);
+        } else {
+            jsonToSmile(input, output);
+        }
+        System.out.printf("Converted %s (%d bytes) to %s (%d bytes) in %dms%n", input, Files.size(input),
+                output, Files.size(output), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public static void jsonToSmile(Path input, Path output) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(input), BUFFER_SIZE);
+             OutputStream out = new BufferedOutputStream(Files.newOutputStream(output), BUFFER_SIZE)) {
+            jsonToSmile(in, out);
+        }
+    }
+
+    public static void smileToJson(Path input, Path output) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(input), BUFFER_SIZE);
+             OutputStream out = new BufferedOutputStream(Files.newOutputStream(output), BUFFER_SIZE)) {
+            copy(new SmileFactory().createParser(in), new JsonFactory().createGenerator(out));
+        }
+    }
+
+    /**
+     * Encodes a JSON document as Smile. Short string values are back-referenced too, since ad ids
+     * and queries repeat across both maps.
+     */
+    public static void jsonToSmile(InputStream in, OutputStream out) throws IOException {
+        SmileFactory smileFactory = SmileFactory.builder()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                .build();
+        copy(new JsonFactory().createParser(in), smileFactory.createGenerator(out));
+    }
+
+    private static void copy(JsonParser parser, JsonGenerator generator) throws IOException {
+        try (parser; generator) {
+            while (parser.nextToken() != null) {
+                generator.copyCurrentStructure(parser);
+            }
+        }
+    }
+}
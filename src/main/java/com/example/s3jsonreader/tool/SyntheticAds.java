@@ -0,0 +1,121 @@
+package com.example.s3jsonreader.tool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic synthetic ad data for footprint reports, benchmarks and load tests. Every value
+ * is derived from the ad index and a seed, so the same dataset is reproduced on any machine
+ * without keeping it around. Each call returns new String instances, as a parser would.
+ *
+ * <p>By default every ad has the same number of queries, drawn uniformly, and payloads of one
+ * length. {@link #skewed} datasets look more like production: query popularity follows a Zipf
+ * distribution, so a few queries are shared by many ads, the number of queries per ad varies,
+ * and payload sizes have a long tail.
+ */
+public final class SyntheticAds {
+
+    private static final double ZIPF_EXPONENT = 1.1;
+    private static final double PAYLOAD_TAIL_INDEX = 1.5;
+
+    private final int adCount;
+    private final int queriesPerAd;
+    private final int distinctQueries;
+    private final int payloadLength;
+    private final int maxPayloadLength;
+    private final long seed;
+    // Cumulative query popularity for skewed datasets, null when queries are drawn uniformly
+    private final double[] queryDistribution;
+
+    /**
+     * Defaults: 4 queries per ad drawn from a vocabulary of one query per 10 ads, 64-character payloads.
+     */
+    public SyntheticAds(int adCount) {
+        this(adCount, 4, Math.max(1, adCount / 10), 64, 42L);
+    }
+
+    public SyntheticAds(int adCount, int queriesPerAd, int distinctQueries, int payloadLength, long seed) {
+        this(adCount, queriesPerAd, distinctQueries, payloadLength, payloadLength, false, seed);
+    }
+
+    private SyntheticAds(int adCount, int queriesPerAd, int distinctQueries, int payloadLength,
+                         int maxPayloadLength, boolean zipfQueries, long seed) {
+        this.adCount = adCount;
+        this.queriesPerAd = queriesPerAd;
+        this.distinctQueries = distinctQueries;
+        this.payloadLength = payloadLength;
+        this.maxPayloadLength = maxPayloadLength;
+        this.seed = seed;
+        this.queryDistribution = zipfQueries ? zipfDistribution(distinctQueries) : null;
+    }
+
+    /**
+     * A production-like dataset: 1 to 7 queries per ad (4 on average) whose popularity follows a
+     * Zipf distribution over one distinct query per 10 ads, and Pareto-distributed payloads of
+     * 64 characters to 8 KB (about 180 on average).
+     */
+    public static SyntheticAds skewed(int adCount, long seed) {
+        return new SyntheticAds(adCount, 4, Math.max(1, adCount / 10), 64, 8192, true, seed);
+    }
+
+    public int getAdCount() {
+        return adCount;
+    }
+
+    public String adId(int index) {
+        return String.format("ad_%08d", index);
+    }
+
+    public String payload(int index) {
+        SplittableRandom random = new SplittableRandom(seed ^ ((long) index << 1));
+        int length = payloadLength;
+        if (maxPayloadLength > payloadLength) {
+            double scale = Math.pow(1 - random.nextDouble(), -1 / PAYLOAD_TAIL_INDEX);
+            length = (int) Math.min(maxPayloadLength, payloadLength * scale);
+        }
+        StringBuilder payload = new StringBuilder(length);
+        payload.append("payload_").append(index).append('_');
+        while (payload.length() < length) {
+            payload.append((char) ('a' + random.nextInt(26)));
+        }
+        payload.setLength(length);
+        return payload.toString();
+    }
+
+    /**
+     * @return The queries of the ad, possibly repeating one another as real query lists do
+     */
+    public List<String> queries(int index) {
+        SplittableRandom random = new SplittableRandom(seed ^ ((long) index << 1 | 1));
+        int count = queryDistribution != null ? 1 + random.nextInt(2 * queriesPerAd - 1) : queriesPerAd;
+        List<String> queries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            queries.add(query(queryDistribution != null ? zipfSample(random) : random.nextInt(distinctQueries)));
+        }
+        return queries;
+    }
+
+    private int zipfSample(SplittableRandom random) {
+        int found = Arrays.binarySearch(queryDistribution, random.nextDouble());
+        return Math.min(distinctQueries - 1, found >= 0 ? found : -found - 1);
+    }
+
+    private static double[] zipfDistribution(int size) {
+        double[] cumulative = new double[size];
+        double total = 0;
+        for (int rank = 0; rank < size; rank++) {
+            total += 1 / Math.pow(rank + 1, ZIPF_EXPONENT);
+            cumulative[rank] = total;
+        }
+        for (int rank = 0; rank < size; rank++) {
+            cumulative[rank] /= total;
+        }
+        return cumulative;
+    }
+
+    private static String query(int id) {
+        return "query_" + id;
+    }
+}
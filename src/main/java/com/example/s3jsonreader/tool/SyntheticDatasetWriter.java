@@ -0,0 +1,83 @@
+package com.example.s3jsonreader.tool;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Writes a synthetic dataset in the shape of the S3 document,
+ * {@code [{"adIdToPayload": {...}, "adIdToQueries": {...}}]}, streaming it so that files of
+ * millions of ads are written in constant memory. The content depends only on the ad count and
+ * the seed, so benchmark inputs can be regenerated anywhere instead of being shared. With
+ * {@code --skewed}, query popularity and payload sizes follow {@link SyntheticAds#skewed}; ten
+ * million skewed ads make a document of about 3 GB.
+ *
+ * <pre>
+ * java -cp s3-json-reader-1.0.0-exec.jar -Dloader.main=com.example.s3jsonreader.tool.SyntheticDatasetWriter \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher 1000000 ads-1000000.json
+ * </pre>
+ */
+public final class SyntheticDatasetWriter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final long DEFAULT_SEED = 42L;
+
+    private SyntheticDatasetWriter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean skewed = args.length > 0 && "--skewed".equals(args[0]);
+        int first = skewed ? 1 : 0;
+        if (args.length - first < 2 || args.length - first > 3) {
+            System.err.println("Usage: SyntheticDatasetWriter [--skewed] <ad count> <output> [seed]");
+            System.exit(2);
+        }
+        int adCount = Integer.parseInt(args[first]);
+        Path output = Paths.get(args[first + 1]);
+        long seed = args.length - first == 3 ? Long.parseLong(args[first + 2]) : DEFAULT_SEED;
+
+        long start = System.nanoTime();
+        write(skewed ? SyntheticAds.skewed(adCount, seed)
+                : new SyntheticAds(adCount, 4, Math.max(1, adCount / 10), 64, seed), output);
+        System.out.printf("Wrote %d ads to %s (%d bytes) in %dms%n", adCount, output, Files.size(output),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public static void write(SyntheticAds ads, Path output) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(output), BUFFER_SIZE)) {
+            write(ads, out);
+        }
+    }
+
+    public static void write(SyntheticAds ads, OutputStream out) throws IOException {
+        try (JsonGenerator generator = new JsonFactory().createGenerator(out)) {
+            generator.writeStartArray();
+            generator.writeStartObject();
+
+            generator.writeObjectFieldStart("adIdToPayload");
+            for (int i = 0; i < ads.getAdCount(); i++) {
+                generator.writeStringField(ads.adId(i), ads.payload(i));
+            }
+            generator.writeEndObject();
+
+            generator.writeObjectFieldStart("adIdToQueries");
+            for (int i = 0; i < ads.getAdCount(); i++) {
+                generator.writeArrayFieldStart(ads.adId(i));
+                for (String query : ads.queries(i)) {
+                    generator.writeString(query);
+                }
+                generator.writeEndArray();
+            }
+            generator.writeEndObject();
+
+            generator.writeEndObject();
+            generator.writeEndArray();
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.s3jsonreader.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for the parts of the S3 REST API the application uses, for path-style
+ * requests: GetObject (with Range, If-None-Match and If-Modified-Since), HeadObject and
+ * ListObjectsV2. Objects are served from files, so multi-GB datasets are streamed from disk.
+ * Requests are not authenticated. ETags are the MD5 of the content, as for single-part uploads,
+ * which the SDK validates full-object downloads against.
+ */
+class LocalS3Server implements AutoCloseable {
+
+    private static final DateTimeFormatter ISO_INSTANT = DateTimeFormatter.ISO_INSTANT;
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(16, runnable -> {
+        Thread thread = new Thread(runnable, "local-s3");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // "bucket/key" -> object, sorted for listings
+    private final Map<String, StoredObject> objects = new ConcurrentSkipListMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong bytesServed = new AtomicLong();
+
+    private record StoredObject(Path file, long size, String eTag, Instant lastModified) {
+    }
+
+    private LocalS3Server(HttpServer server) {
+        this.server = server;
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    static LocalS3Server start() throws IOException {
+        return new LocalS3Server(HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0));
+    }
+
+    URI endpoint() {
+        return URI.create("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort());
+    }
+
+    /**
+     * Stores the file under the key, replacing any previous object, with a fresh Last-Modified.
+     *
+     * @return The ETag of the object, quoted as S3 returns it
+     */
+    String putObject(String bucket, String key, Path file) throws IOException {
+        String eTag = "\"" + md5(file) + "\"";
+        objects.put(bucket + "/" + key, new StoredObject(file, Files.size(file), eTag,
+                Instant.now().truncatedTo(ChronoUnit.SECONDS)));
+        return eTag;
+    }
+
+    long requestCount() {
+        return requests.get();
+    }
+
+    long bytesServed() {
+        return bytesServed.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            String path = URLDecoder.decode(exchange.getRequestURI().getRawPath(), StandardCharsets.UTF_8).substring(1);
+            int slash = path.indexOf('/');
+            String bucket = slash < 0 ? path : path.substring(0, slash);
+            String key = slash < 0 ? "" : path.substring(slash + 1);
+            boolean head = "HEAD".equals(exchange.getRequestMethod());
+
+            if (key.isEmpty() && !head) {
+                list(exchange, bucket, query(exchange.getRequestURI()));
+                return;
+            }
+            StoredObject object = objects.get(bucket + "/" + key);
+            if (object == null) {
+                error(exchange, 404, "NoSuchKey", "The specified key does not exist.");
+                return;
+            }
+            get(exchange, object, head);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void get(HttpExchange exchange, StoredObject object, boolean head) throws IOException {
+        exchange.getResponseHeaders().set("ETag", object.eTag());
+        exchange.getResponseHeaders().set("Last-Modified",
+                DateTimeFormatter.RFC_1123_DATE_TIME.format(object.lastModified().atZone(ZoneOffset.UTC)));
+        exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        String ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+        if (ifNoneMatch != null ? ifNoneMatch.equals(object.eTag())
+                : ifModifiedSince != null && !object.lastModified().isAfter(
+                ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant())) {
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+
+        long first = 0;
+        long last = object.size() - 1;
+        int status = 200;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (range != null && range.startsWith("bytes=")) {
+            String[] bounds = range.substring("bytes=".length()).split("-", 2);
+            first = Long.parseLong(bounds[0]);
+            if (!bounds[1].isEmpty()) {
+                last = Math.min(last, Long.parseLong(bounds[1]));
+            }
+            status = 206;
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + first + "-" + last + "/" + object.size());
+        }
+        long length = Math.max(0, last - first + 1);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.getResponseHeaders().set("Content-Length", Long.toString(length));
+
+        if (head || length == 0) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, length);
+        try (FileChannel channel = FileChannel.open(object.file());
+             WritableByteChannel out = Channels.newChannel(exchange.getResponseBody())) {
+            long position = first;
+            long end = first + length;
+            while (position < end) {
+                position += channel.transferTo(position, end - position, out);
+            }
+        }
+        bytesServed.addAndGet(length);
+    }
+
+    private void list(HttpExchange exchange, String bucket, Map<String, String> query) throws IOException {
+        String prefix = query.getOrDefault("prefix", "");
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>")
+                .append("<ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">")
+                .append("<Name>").append(escape(bucket)).append("</Name>")
+                .append("<Prefix>").append(escape(prefix)).append("</Prefix>");
+        int count = 0;
+        for (Map.Entry<String, StoredObject> entry : objects.entrySet()) {
+            String bucketKey = entry.getKey();
+            if (!bucketKey.startsWith(bucket + "/" + prefix)) {
+                continue;
+            }
+            StoredObject object = entry.getValue();
+            xml.append("<Contents><Key>").append(escape(bucketKey.substring(bucket.length() + 1))).append("</Key>")
+                    .append("<LastModified>").append(ISO_INSTANT.format(object.lastModified())).append("</LastModified>")
+                    .append("<ETag>").append(escape(object.eTag())).append("</ETag>")
+                    .append("<Size>").append(object.size()).append("</Size>")
+                    .append("<StorageClass>STANDARD</StorageClass></Contents>");
+            count++;
+        }
+        xml.append("<KeyCount>").append(count).append("</KeyCount>")
+                .append("<MaxKeys>1000</MaxKeys><IsTruncated>false</IsTruncated></ListBucketResult>");
+        send(exchange, 200, xml.toString());
+    }
+
+    private void error(HttpExchange exchange, int status, String code, String message) throws IOException {
+        send(exchange, status, "<?xml version=\"1.0\" encoding=\"UTF-8\"?><Error><Code>" + code
+                + "</Code><Message>" + message + "</Message></Error>");
+    }
+
+    private void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> query(URI uri) {
+        Map<String, String> parameters = new HashMap<>();
+        if (uri.getRawQuery() == null) {
+            return parameters;
+        }
+        for (String pair : uri.getRawQuery().split("&")) {
+            int equals = pair.indexOf('=');
+            String name = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), StandardCharsets.UTF_8);
+            String value = equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            parameters.put(name, value);
+        }
+        return parameters;
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    private static String md5(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] buffer = new byte[1 << 16];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.example.s3jsonreader.loadtest;
+
+import com.example.s3jsonreader.service.S3DataCacheService;
+import com.example.s3jsonreader.tool.SyntheticAds;
+import com.example.s3jsonreader.tool.SyntheticDatasetWriter;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * End-to-end reload test against {@link LocalS3Server}: the application loads a skewed synthetic
+ * dataset through its real S3 clients, then reloads it several times while client threads keep
+ * querying {@code /api/ads/{adId}}. Reports reload durations, peak heap and request latency
+ * percentiles during and between reloads.
+ *
+ * <p>Tagged {@code load} and excluded from the default build; run it with
+ * {@code mvn test -Pload-test}. Scale it with {@code -Dloadtest.ads=10000000} (a document of
+ * about 3 GB), {@code -Dloadtest.reloads} and {@code -Dloadtest.clients}.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ReloadLoadTest {
+
+    private static final String BUCKET = "load-test";
+    private static final String KEY = "data.json";
+    private static final int AD_COUNT = Integer.getInteger("loadtest.ads", 200_000);
+    private static final int RELOADS = Integer.getInteger("loadtest.reloads", 5);
+    private static final int CLIENTS = Integer.getInteger("loadtest.clients", 8);
+
+    @TempDir
+    static Path dataDirectory;
+
+    private static LocalS3Server s3;
+    private static Path[] datasets;
+    private static String initialETag;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private S3DataCacheService cacheService;
+
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private volatile boolean reloading;
+    private volatile boolean running = true;
+
+    @BeforeAll
+    static void startS3() throws IOException {
+        // Two versions of the dataset with the same ad ids, swapped on every reload
+        datasets = new Path[2];
+        for (int version = 0; version < datasets.length; version++) {
+            datasets[version] = dataDirectory.resolve("data-" + version + ".json");
+            SyntheticDatasetWriter.write(SyntheticAds.skewed(AD_COUNT, version + 1), datasets[version]);
+        }
+        s3 = LocalS3Server.start();
+        initialETag = s3.putObject(BUCKET, KEY, datasets[0]);
+
+        // The stand-in does not check signatures, but the SDK needs credentials to sign with
+        System.setProperty("aws.accessKeyId", "load-test");
+        System.setProperty("aws.secretAccessKey", "load-test");
+    }
+
+    @AfterAll
+    static void stopS3() {
+        if (s3 != null) {
+            s3.close();
+        }
+    }
+
+    @DynamicPropertySource
+    static void s3Properties(DynamicPropertyRegistry registry) {
+        registry.add("aws.s3.endpoint", () -> s3.endpoint().toString());
+        registry.add("aws.s3.path-style-access", () -> "true");
+        registry.add("aws.s3.region", () -> "us-east-1");
+        registry.add("aws.s3.bucket-name", () -> BUCKET);
+        registry.add("aws.s3.json-file-key", () -> KEY);
+        registry.add("aws.s3.json-file-prefix", () -> "");
+        registry.add("aws.s3.delta-prefix", () -> "");
+        registry.add("scheduler.s3.enabled", () -> "true");
+        registry.add("scheduler.s3.initial-delay", () -> "0");
+        // Reloads are triggered by the test only
+        registry.add("scheduler.s3.fixed-delay", () -> "3600");
+    }
+
+    @Test
+    void testReloadsUnderLoad() throws Exception {
+        awaitVersion(initialETag, Duration.ofMinutes(10));
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        AtomicLong peakHeap = new AtomicLong();
+        Thread heapSampler = new Thread(() -> {
+            while (running) {
+                peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                sleep(5);
+            }
+        }, "heap-sampler");
+        heapSampler.start();
+
+        List<Client> clients = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            Client client = new Client(i);
+            clients.add(client);
+            client.thread.start();
+        }
+
+        long[] reloadMillis = new long[RELOADS];
+        for (int reload = 0; reload < RELOADS; reload++) {
+            sleep(1_000);
+            String eTag = s3.putObject(BUCKET, KEY, datasets[(reload + 1) % datasets.length]);
+            reloading = true;
+            long start = System.nanoTime();
+            HttpResponse<String> response = httpClient.send(
+                    HttpRequest.newBuilder(url("/api/scheduler/trigger-load")).POST(HttpRequest.BodyPublishers.noBody()).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            reloadMillis[reload] = (System.nanoTime() - start) / 1_000_000;
+            reloading = false;
+            assertEquals(200, response.statusCode(), response.body());
+            assertEquals(eTag, cacheService.getStats().getBaseVersion());
+        }
+        sleep(1_000);
+
+        running = false;
+        for (Client client : clients) {
+            client.thread.join();
+        }
+        heapSampler.join();
+
+        Latencies duringReload = new Latencies();
+        Latencies betweenReloads = new Latencies();
+        long errors = 0;
+        for (Client client : clients) {
+            duringReload.addAll(client.duringReload);
+            betweenReloads.addAll(client.betweenReloads);
+            errors += client.errors;
+        }
+
+        System.out.printf("%nReload load test: %d ads, %d MB per version, %d reloads, %d clients%n",
+                AD_COUNT, Files.size(datasets[0]) >> 20, RELOADS, CLIENTS);
+        System.out.printf("  reload ms:            %s%n", Arrays.toString(reloadMillis));
+        System.out.printf("  peak heap:            %d MB (max %d MB)%n",
+                peakHeap.get() >> 20, Runtime.getRuntime().maxMemory() >> 20);
+        System.out.printf("  S3 requests/bytes:    %d / %d MB%n", s3.requestCount(), s3.bytesServed() >> 20);
+        System.out.printf("  during reloads:       %s%n", duringReload.summary());
+        System.out.printf("  between reloads:      %s%n", betweenReloads.summary());
+        System.out.printf("  request errors:       %d%n%n", errors);
+
+        assertEquals(0, errors);
+        assertTrue(duringReload.size() > 0, "No requests overlapped a reload");
+    }
+
+    private void awaitVersion(String eTag, Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (!eTag.equals(cacheService.getStats().getBaseVersion())) {
+            assertTrue(System.nanoTime() < deadline, "Initial load did not complete within " + timeout);
+            sleep(100);
+        }
+    }
+
+    private URI url(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * One client thread looking up random ads back to back.
+     */
+    private final class Client {
+
+        final Latencies duringReload = new Latencies();
+        final Latencies betweenReloads = new Latencies();
+        final Thread thread;
+        long errors;
+
+        Client(int index) {
+            SyntheticAds ads = new SyntheticAds(AD_COUNT);
+            SplittableRandom random = new SplittableRandom(index);
+            thread = new Thread(() -> {
+                while (running) {
+                    boolean overlapsReload = reloading;
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = httpClient.send(
+                                HttpRequest.newBuilder(url("/api/ads/" + ads.adId(random.nextInt(AD_COUNT)))).build(),
+                                HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() != 200) {
+                            errors++;
+                        }
+                    } catch (IOException e) {
+                        errors++;
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    long elapsed = System.nanoTime() - start;
+                    (overlapsReload || reloading ? duringReload : betweenReloads).add(elapsed);
+                }
+            }, "load-client-" + index);
+        }
+    }
+
+    /**
+     * Request latencies in nanoseconds, summarized as percentiles.
+     */
+    private static final class Latencies {
+
+        private long[] values = new long[1 << 12];
+        private int size;
+
+        void add(long nanos) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = nanos;
+        }
+
+        void addAll(Latencies other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i]);
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        String summary() {
+            if (size == 0) {
+                return "no requests";
+            }
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            return String.format("n=%d p50=%.2fms p90=%.2fms p99=%.2fms p99.9=%.2fms max=%.2fms", size,
+                    percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+                    percentile(sorted, 0.999), sorted[size - 1] / 1e6);
+        }
+
+        private static double percentile(long[] sorted, double quantile) {
+            return sorted[Math.min(sorted.length - 1, (int) Math.ceil(quantile * sorted.length) - 1)] / 1e6;
+        }
+    }
+}
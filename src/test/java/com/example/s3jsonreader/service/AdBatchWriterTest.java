@@ -0,0 +1,74 @@
+package com.example.s3jsonreader.service;
+
+import com.example.s3jsonreader.snapshot.AdSnapshot;
+import com.example.s3jsonreader.snapshot.AdSnapshotReader;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdBatchWriterTest {
+
+    private static final String JSON = """
+            [{"adIdToPayload": {"ad_1": "p1", "ad_2": {"title": "structured"}},
+              "adIdToQueries": {"ad_1": ["shoes", "red"], "ad_3": ["hats"]}}]
+            """;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AdBatchWriter batchWriter = new AdBatchWriter();
+
+    @Test
+    void testWrite_PayloadsAndQueriesInRequestOrder() throws IOException {
+        AdSnapshot snapshot = new AdSnapshotReader(objectMapper)
+                .read(new ByteArrayInputStream(JSON.getBytes(StandardCharsets.UTF_8)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        batchWriter.write(snapshot, List.of("ad_3", "ad_1", "ad_unknown", "ad_2"), out);
+
+        JsonNode response = objectMapper.readTree(out.toByteArray());
+        assertEquals(List.of("ad_3", "ad_1", "ad_unknown", "ad_2"), fieldNames(response));
+
+        assertEquals("p1", response.get("ad_1").get("payload").asText());
+        assertEquals(2, response.get("ad_1").get("queries").size());
+        assertTrue(response.get("ad_3").get("payload").isNull());
+        assertEquals("hats", response.get("ad_3").get("queries").get(0).asText());
+        assertEquals("{\"title\":\"structured\"}", response.get("ad_2").get("payload").asText());
+        assertEquals(0, response.get("ad_2").get("queries").size());
+        assertTrue(response.get("ad_unknown").isNull());
+    }
+
+    @Test
+    void testWrite_LeavesTheOutputOpen() throws IOException {
+        AdSnapshot snapshot = new AdSnapshotReader(objectMapper)
+                .read(new ByteArrayInputStream(JSON.getBytes(StandardCharsets.UTF_8)));
+        AtomicBoolean closed = new AtomicBoolean();
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        };
+
+        batchWriter.write(snapshot, List.of("ad_1"), out);
+
+        assertFalse(closed.get());
+        assertEquals("p1", objectMapper.readTree(out.toByteArray()).get("ad_1").get("payload").asText());
+    }
+
+    private static List<String> fieldNames(JsonNode node) {
+        List<String> names = new ArrayList<>();
+        node.fieldNames().forEachRemaining(names::add);
+        return names;
+    }
+}
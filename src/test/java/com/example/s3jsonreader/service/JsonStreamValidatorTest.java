@@ -0,0 +1,56 @@
+package com.example.s3jsonreader.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JsonStreamValidatorTest {
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    @Test
+    void testValidDocumentSplitAcrossChunks() {
+        assertDoesNotThrow(() -> validate("[{\"adIdToPayload\": {\"ad_1\": \"p\\u00e9\"}, \"n\": [1, 2.5e3, true, null]}]", 3));
+    }
+
+    @Test
+    void testMalformedDocument() {
+        assertThrows(IOException.class, () -> validate("{\"a\": 1,, \"b\": 2}", 4));
+    }
+
+    @Test
+    void testTruncatedOrEmptyDocument() {
+        assertThrows(IOException.class, () -> validate("{\"a\": [1, 2", 5));
+        assertThrows(IOException.class, () -> validate("  ", 5));
+    }
+
+    @Test
+    void testTransferToCopiesWhileValidating() throws IOException {
+        byte[] json = "{\"items\": [\"alpha\", \"beta\"]}".getBytes(StandardCharsets.UTF_8);
+        S3ObjectStream object = new S3ObjectStream("k", true, "\"e\"", null, null, null, json.length,
+                new ByteArrayInputStream(json), new S3ConcurrencyLimiter(1).acquire());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (object) {
+            assertEquals(json.length, object.transferTo(out, new JsonStreamValidator(jsonFactory)));
+        }
+        assertEquals(new String(json, StandardCharsets.UTF_8), out.toString(StandardCharsets.UTF_8));
+    }
+
+    private void validate(String json, int chunkSize) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        JsonStreamValidator validator = new JsonStreamValidator(jsonFactory);
+        for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+            validator.feed(bytes, offset, Math.min(chunkSize, bytes.length - offset));
+        }
+        validator.finish();
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.s3jsonreader.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class S3AsyncServiceTest {
+
+    @Mock
+    private S3AsyncClient s3AsyncClient;
+
+    @Spy
+    private S3FetchExecutors fetchExecutors = new S3FetchExecutors(false);
+
+    @InjectMocks
+    private S3AsyncService s3AsyncService;
+
+    private static final String BUCKET_NAME = "chongbei-test-input";
+    private static final String JSON_FILE_KEY = "data.json";
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(s3AsyncService, "bucketName", BUCKET_NAME);
+        ReflectionTestUtils.setField(s3AsyncService, "jsonFileKey", JSON_FILE_KEY);
+        ReflectionTestUtils.setField(s3AsyncService, "parseThreads", 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        s3AsyncService.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testReadJsonFromS3Async_Success() throws Exception {
+        // Arrange
+        CompletableFuture<ResponseInputStream<GetObjectResponse>> pending = new CompletableFuture<>();
+        when(s3AsyncClient.getObject(
+                argThat((GetObjectRequest request) -> JSON_FILE_KEY.equals(request.key())),
+                any(AsyncResponseTransformer.class)))
+                .thenReturn(pending);
+
+        // Act - the call returns before S3 has answered
+        CompletableFuture<JsonNode> result = s3AsyncService.readJsonFromS3Async();
+        assertFalse(result.isDone());
+        pending.complete(body(GetObjectResponse.builder().eTag("\"e1\"").build(), "{\"id\": 1, \"name\": \"Async\"}"));
+
+        // Assert
+        assertEquals("Async", result.get().get("name").asText());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testReadJsonFromS3ByKeyAsync_S3ExceptionBecomesIOException() {
+        // Arrange
+        S3Exception s3Exception = (S3Exception) S3Exception.builder()
+                .statusCode(404)
+                .awsErrorDetails(AwsErrorDetails.builder().errorCode("NoSuchKey").errorMessage("Not found").build())
+                .build();
+        when(s3AsyncClient.getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class)))
+                .thenReturn(CompletableFuture.failedFuture(s3Exception));
+
+        // Act & Assert
+        ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> s3AsyncService.readJsonFromS3ByKeyAsync("missing.json").get());
+        assertInstanceOf(IOException.class, exception.getCause());
+        assertEquals("Failed to read JSON file from S3: Not found", exception.getCause().getMessage());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testReadJsonFromS3Async_InvalidJson() {
+        // Arrange
+        when(s3AsyncClient.getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class)))
+                .thenReturn(CompletableFuture.completedFuture(body(GetObjectResponse.builder().build(), "{not json")));
+
+        // Act & Assert
+        ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> s3AsyncService.readJsonFromS3Async().get());
+        assertInstanceOf(IOException.class, exception.getCause());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testReadFromS3IfModifiedAsync_ParsesTheBodyWhileItIsStreamed() throws Exception {
+        // Arrange - the body arrives in two parts, the second only after parsing has started
+        PipedOutputStream upload = new PipedOutputStream();
+        PipedInputStream stream = new PipedInputStream(upload);
+        when(s3AsyncClient.getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class)))
+                .thenReturn(CompletableFuture.completedFuture(new ResponseInputStream<>(
+                        GetObjectResponse.builder().eTag("\"e1\"").contentLength(16L).build(),
+                        AbortableInputStream.create(stream))));
+        CountDownLatch parsing = new CountDownLatch(1);
+
+        // Act
+        CompletableFuture<S3ReadResult<JsonNode>> result = s3AsyncService.readFromS3IfModifiedAsync(
+                JSON_FILE_KEY, null, content -> {
+                    parsing.countDown();
+                    return new ObjectMapper().readTree(content);
+                });
+        upload.write("{\"id\": ".getBytes(StandardCharsets.UTF_8));
+        assertTrue(parsing.await(5, TimeUnit.SECONDS));
+        assertFalse(result.isDone());
+        upload.write("7}".getBytes(StandardCharsets.UTF_8));
+        upload.close();
+
+        // Assert
+        S3ReadResult<JsonNode> read = result.get(5, TimeUnit.SECONDS);
+        assertEquals(7, read.getData().get("id").asInt());
+        assertEquals("\"e1\"", read.getETag());
+    }
+
+    @Test
+    void testReadJsonFromS3ByKeyAsync_BlankKey() {
+        ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> s3AsyncService.readJsonFromS3ByKeyAsync("  ").get());
+        assertInstanceOf(IllegalArgumentException.class, exception.getCause());
+        verifyNoInteractions(s3AsyncClient);
+    }
+
+    private static ResponseInputStream<GetObjectResponse> body(GetObjectResponse response, String content) {
+        return new ResponseInputStream<>(response,
+                AbortableInputStream.create(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8))));
+    }
+}
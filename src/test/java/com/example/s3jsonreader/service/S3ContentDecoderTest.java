@@ -0,0 +1,68 @@
+package com.example.s3jsonreader.service;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class S3ContentDecoderTest {
+
+    private static final String JSON = "[{\"adIdToPayload\": {\"ad_1\": \"p1\"}, \"adIdToQueries\": {\"ad_1\": [\"shoes\"]}}]";
+
+    @Test
+    void testDecode_GzipDetectedByMagicBytes() throws IOException {
+        assertEquals(JSON, decode(gzip(JSON), "data.json", null));
+    }
+
+    @Test
+    void testDecode_ZstdDetectedByMagicBytesSuffixOrEncoding() throws IOException {
+        byte[] compressed = zstd(JSON);
+
+        assertEquals(JSON, decode(compressed, "data.json", null));
+        assertEquals(JSON, decode(compressed, "data.json.zst", null));
+        assertEquals(JSON, decode(compressed, "data.json", "zstd"));
+    }
+
+    @Test
+    void testDecode_GzipByContentEncoding() throws IOException {
+        assertEquals(JSON, decode(gzip(JSON), "data.json", "gzip"));
+        assertEquals(S3ContentDecoder.Codec.GZIP, S3ContentDecoder.fromKey("shards/part-0.json.GZ"));
+    }
+
+    @Test
+    void testDecode_PlainContentPassesThrough() throws IOException {
+        assertEquals(JSON, decode(JSON.getBytes(StandardCharsets.UTF_8), "data.json", null));
+        assertEquals("", decode(new byte[0], "data.json", null));
+        assertEquals("x", decode(new byte[]{'x'}, null, "identity"));
+    }
+
+    private static String decode(byte[] content, String key, String contentEncoding) throws IOException {
+        try (InputStream in = S3ContentDecoder.decode(new ByteArrayInputStream(content), key, contentEncoding)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static byte[] gzip(String text) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(buffer)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return buffer.toByteArray();
+    }
+
+    private static byte[] zstd(String text) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (OutputStream out = new ZstdOutputStream(buffer)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return buffer.toByteArray();
+    }
+}
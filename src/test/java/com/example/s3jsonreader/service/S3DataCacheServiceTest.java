@@ -0,0 +1,186 @@
+package com.example.s3jsonreader.service;
+
+import com.example.s3jsonreader.config.SchedulerConfig;
+import com.example.s3jsonreader.snapshot.AdDelta;
+import com.example.s3jsonreader.snapshot.AdSnapshot;
+import com.example.s3jsonreader.snapshot.AdSnapshotBuilder;
+import com.example.s3jsonreader.snapshot.MappedPayloadStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class S3DataCacheServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final S3DataCacheService cacheService = new S3DataCacheService(new SchedulerConfig());
+
+    @Test
+    void testUpdateCache_PublishesOneConsistentVersion() throws IOException {
+        assertNull(cacheService.acquire());
+
+        AdSnapshot base = snapshot(tempDir, "p1");
+        cacheService.updateCache(base, "\"v1\"");
+        SnapshotVersion first = cacheService.getCurrentVersion();
+        AdSnapshot derived = base.apply(new AdDelta(snapshot(tempDir, "p2"), Set.of()));
+        assertTrue(cacheService.applyDeltas(base, derived, List.of("d1@\"e1\""), 7));
+
+        SnapshotVersion second = cacheService.getCurrentVersion();
+        assertSame(base, first.getData());
+        assertSame(derived, second.getData());
+        assertEquals(first.getVersion() + 1, second.getVersion());
+        assertEquals("\"v1\"", second.getETag());
+        assertEquals(1, second.getAppliedDeltas());
+        assertEquals(7, second.getDeltaApplyMillis());
+        assertEquals(first.getHeapBytes(), second.getPreviousHeapBytes());
+        assertFalse(second.getLoadTime().isBefore(first.getLoadTime()));
+
+        S3DataCacheService.CacheStats stats = cacheService.getStats();
+        assertEquals(second.getVersion(), stats.getVersion());
+        assertEquals(second.getLoadTime(), stats.getLastUpdateTime());
+        assertFalse(cacheService.applyDeltas(base, derived, List.of("d1@\"e1\""), 7));
+    }
+
+    @Test
+    void testApplyDeltas_ETagIdentifiesTheAppliedDeltas() throws IOException {
+        AdSnapshot base = snapshot(tempDir, "p1");
+        AdSnapshot derived = base.apply(new AdDelta(AdSnapshot.empty(), Set.of("ad_2")));
+
+        // Same base and the same number of deltas, but different ones, e.g. on two pods
+        cacheService.updateCache(base, "\"v1\"");
+        cacheService.applyDeltas(base, derived, List.of("deltas/a.json@\"e1\""), 1);
+        String first = cacheService.getSerializedData().getETag();
+        S3DataCacheService other = new S3DataCacheService(new SchedulerConfig());
+        other.updateCache(base, "\"v1\"");
+        other.applyDeltas(base, derived, List.of("deltas/b.json@\"e2\""), 1);
+        String second = other.getSerializedData().getETag();
+        S3DataCacheService same = new S3DataCacheService(new SchedulerConfig());
+        same.updateCache(base, "\"v1\"");
+        same.applyDeltas(base, derived, List.of("deltas/a.json@\"e1\""), 1);
+
+        assertNotEquals(first, second);
+        assertEquals(first, same.getSerializedData().getETag());
+        assertNotEquals(first, SerializedSnapshot.of(base, "\"v1\"", false, false, new ObjectMapper()).getETag());
+    }
+
+    @Test
+    void testLease_KeepsReplacedSnapshotUntilLastReaderFinishes() throws IOException {
+        cacheService.updateCache(snapshot(tempDir, "p1"), "\"v1\"");
+        SnapshotLease first = cacheService.acquire();
+        SnapshotLease second = cacheService.acquire();
+
+        cacheService.updateCache(snapshot(tempDir, "p2"), "\"v2\"");
+
+        // Both readers keep the version they started with, payload file included
+        assertEquals("p1", first.getData().getPayload("ad_1"));
+        assertEquals("\"v1\"", first.getVersion().getETag());
+        assertEquals(2, countFiles());
+        assertEquals(1, cacheService.getStats().getRetiredSnapshotsInUse());
+
+        first.close();
+        first.close();
+        assertEquals(2, countFiles());
+
+        second.close();
+        assertEquals(1, countFiles());
+        assertEquals(0, cacheService.getStats().getRetiredSnapshotsInUse());
+
+        cacheService.clearCache();
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    void testApplyDeltas_KeepsTheSharedBaseOpen() throws IOException {
+        AdSnapshot base = snapshot(tempDir, "p1");
+        cacheService.updateCache(base, "\"v1\"");
+        SnapshotLease lease = cacheService.acquire();
+
+        cacheService.applyDeltas(base, base.apply(new AdDelta(AdSnapshot.empty(), Set.of("ad_2"))), List.of("d1@\"e1\""), 1);
+        lease.close();
+
+        try (SnapshotLease current = cacheService.acquire()) {
+            assertEquals("p1", current.getData().getPayload("ad_1"));
+            assertEquals(1, countFiles());
+        }
+        cacheService.clearCache();
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    void testAcquire_ConcurrentReadersNeverSeeAReleasedSnapshot() throws Exception {
+        int readers = 4;
+        AtomicBoolean publishing = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(readers);
+        try {
+            cacheService.updateCache(snapshot(Files.createDirectory(tempDir.resolve("0")), "p"), null);
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < readers; i++) {
+                results.add(executor.submit(() -> {
+                    int reads = 0;
+                    while (publishing.get()) {
+                        try (SnapshotLease lease = cacheService.acquire()) {
+                            // Each version's payload file lives in the directory named by its "dir" payload
+                            Path directory = Path.of(lease.getData().getPayload("dir"));
+                            try (Stream<Path> files = Files.list(directory)) {
+                                assertEquals(1, files.count(), "released while pinned: " + directory);
+                            }
+                            reads++;
+                        }
+                    }
+                    return reads;
+                }));
+            }
+
+            for (int i = 1; i <= 200; i++) {
+                cacheService.updateCache(snapshot(Files.createDirectory(tempDir.resolve(String.valueOf(i))), "p"), null);
+            }
+            publishing.set(false);
+            for (Future<Integer> result : results) {
+                assertTrue(result.get() > 0);
+            }
+        } finally {
+            publishing.set(false);
+            executor.shutdownNow();
+        }
+
+        assertEquals(0, cacheService.getStats().getRetiredSnapshotsInUse());
+        assertEquals(201, cacheService.getStats().getVersion());
+        assertNotNull(cacheService.getCachedData());
+    }
+
+    private static AdSnapshot snapshot(Path directory, String payload) throws IOException {
+        return new AdSnapshotBuilder(MappedPayloadStore.writer(directory))
+                .putPayload("ad_1", payload)
+                .putPayload("ad_2", payload)
+                .putPayload("dir", directory.toString())
+                .addQuery("ad_1", "q_1")
+                .build();
+    }
+
+    private long countFiles() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.s3jsonreader.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class S3LoaderMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final S3LoaderMetrics metrics = new S3LoaderMetrics(registry);
+
+    @Test
+    void testCountDownload_RecordsBytesOnceOnClose() throws IOException {
+        InputStream body = metrics.countDownload(new ByteArrayInputStream(new byte[10_000]));
+
+        assertFalse(body.markSupported());
+        assertEquals(1, body.read(new byte[1]));
+        assertEquals(0, body.read());
+        assertEquals(1000, body.skip(1000));
+        body.readAllBytes();
+        body.close();
+        body.close();
+
+        DistributionSummary bytes = registry.get("s3.fetch.bytes").summary();
+        assertEquals(1, bytes.count());
+        assertEquals(10_000, bytes.totalAmount());
+        DistributionSummary throughput = registry.get("s3.fetch.throughput").summary();
+        assertEquals(1, throughput.count());
+        assertTrue(throughput.max() > 0);
+    }
+
+    @Test
+    void testRecordParse_TaggedByObjectKind() {
+        metrics.recordParse(S3LoaderMetrics.ObjectKind.SHARD, TimeUnit.MILLISECONDS.toNanos(5));
+        metrics.recordParse(S3LoaderMetrics.ObjectKind.SHARD, TimeUnit.MILLISECONDS.toNanos(7));
+        metrics.recordParse(S3LoaderMetrics.ObjectKind.DELTA, TimeUnit.MILLISECONDS.toNanos(1));
+
+        assertEquals(2, registry.get("snapshot.parse").tag("object", "shard").timer().count());
+        assertEquals(12, registry.get("snapshot.parse").tag("object", "shard").timer().totalTime(TimeUnit.MILLISECONDS), 0.001);
+        assertEquals(1, registry.get("snapshot.parse").tag("object", "delta").timer().count());
+        assertEquals(0, registry.get("snapshot.parse").tag("object", "dataset").timer().count());
+    }
+
+    @Test
+    void testRecordDownload_ZeroDurationSkipsThroughput() {
+        metrics.recordDownload(100, 0);
+
+        assertEquals(1, registry.get("s3.fetch.bytes").summary().count());
+        assertEquals(0, registry.get("s3.fetch.throughput").summary().count());
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.s3jsonreader.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class S3ObjectCacheTest {
+
+    @Mock
+    private S3AsyncService s3AsyncService;
+
+    @InjectMocks
+    private S3ObjectCache objectCache;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(objectCache, "maxWeightBytes", 10_000L);
+        ReflectionTestUtils.setField(objectCache, "ttl", Duration.ofMinutes(5));
+    }
+
+    @Test
+    void testGet_MissThenHit() throws Exception {
+        // Arrange
+        when(s3AsyncService.readFromS3IfModifiedAsync(eq("a.json"), isNull(), anyParser()))
+                .thenReturn(CompletableFuture.completedFuture(modified("{\"v\": 1}", "\"e1\"", 10)));
+
+        // Act
+        JsonNode first = objectCache.get("a.json").get();
+        JsonNode second = objectCache.get("a.json").get();
+
+        // Assert
+        assertEquals(1, first.get("v").asInt());
+        assertSame(first, second);
+        verify(s3AsyncService, times(1)).readFromS3IfModifiedAsync(eq("a.json"), isNull(), anyParser());
+        S3ObjectCache.KeyCacheStats stats = objectCache.getStats();
+        assertEquals(1, stats.getMisses());
+        assertEquals(1, stats.getHits());
+        assertEquals(S3ObjectCache.estimateHeapBytes(first), stats.getWeightBytes());
+    }
+
+    @Test
+    void testGet_ConcurrentMissesShareOneFetch() throws Exception {
+        // Arrange
+        CompletableFuture<S3ReadResult<JsonNode>> pending = new CompletableFuture<>();
+        when(s3AsyncService.readFromS3IfModifiedAsync(eq("hot.json"), isNull(), anyParser())).thenReturn(pending);
+
+        // Act
+        CompletableFuture<JsonNode> first = objectCache.get("hot.json");
+        CompletableFuture<JsonNode> second = objectCache.get("hot.json");
+        assertFalse(first.isDone());
+        pending.complete(modified("{\"v\": 2}", "\"e2\"", 10));
+
+        // Assert
+        assertSame(first.get(), second.get());
+        verify(s3AsyncService, times(1)).readFromS3IfModifiedAsync(eq("hot.json"), isNull(), anyParser());
+        assertEquals(1, objectCache.getStats().getCoalesced());
+    }
+
+    @Test
+    void testGet_ExpiredEntryIsRevalidatedWithETag() throws Exception {
+        // Arrange
+        ReflectionTestUtils.setField(objectCache, "ttl", Duration.ZERO);
+        when(s3AsyncService.readFromS3IfModifiedAsync(eq("a.json"), isNull(), anyParser()))
+                .thenReturn(CompletableFuture.completedFuture(modified("{\"v\": 1}", "\"e1\"", 10)));
+        when(s3AsyncService.readFromS3IfModifiedAsync(eq("a.json"), eq("\"e1\""), anyParser()))
+                .thenReturn(CompletableFuture.completedFuture(S3ReadResult.notModified("\"e1\"", null)));
+
+        // Act
+        JsonNode first = objectCache.get("a.json").get();
+        JsonNode revalidated = objectCache.get("a.json").get();
+
+        // Assert
+        assertSame(first, revalidated);
+        assertEquals(1, objectCache.getStats().getRevalidations());
+        assertEquals(1, objectCache.getStats().getMisses());
+    }
+
+    @Test
+    void testGet_EvictsLeastRecentlyUsedByWeight() throws Exception {
+        // Arrange - room for two objects
+        long weight = S3ObjectCache.estimateHeapBytes(objectMapper.readTree("{}"));
+        ReflectionTestUtils.setField(objectCache, "maxWeightBytes", weight * 5 / 2);
+        for (String key : new String[]{"a", "b", "c"}) {
+            when(s3AsyncService.readFromS3IfModifiedAsync(eq(key), isNull(), anyParser()))
+                    .thenReturn(CompletableFuture.completedFuture(modified("{}", "\"" + key + "\"", 40)));
+        }
+
+        // Act
+        objectCache.get("a").get();
+        objectCache.get("b").get();
+        objectCache.get("a").get();
+        objectCache.get("c").get();
+        objectCache.get("a").get();
+        objectCache.get("b").get();
+
+        // Assert - "b" was the least recently used when "c" arrived
+        S3ObjectCache.KeyCacheStats stats = objectCache.getStats();
+        assertEquals(2, stats.getEntries());
+        assertEquals(2 * weight, stats.getWeightBytes());
+        assertEquals(2, stats.getEvictions());
+        verify(s3AsyncService, times(1)).readFromS3IfModifiedAsync(eq("a"), isNull(), anyParser());
+        verify(s3AsyncService, times(2)).readFromS3IfModifiedAsync(eq("b"), isNull(), anyParser());
+    }
+
+    @Test
+    void testGet_WeighsTheParsedTreeNotTheDownload() throws Exception {
+        // Arrange - a compressed object of 50 bytes expanding into a tree over the 10 KB limit
+        String json = "{\"items\": [" + "\"x\",".repeat(1_000) + "\"x\"]}";
+        when(s3AsyncService.readFromS3IfModifiedAsync(eq("big.json.gz"), isNull(), anyParser()))
+                .thenReturn(CompletableFuture.completedFuture(modified(json, "\"e1\"", 50)));
+
+        // Act
+        JsonNode tree = objectCache.get("big.json.gz").get();
+
+        // Assert - over the limit, so it is served but not cached
+        assertTrue(S3ObjectCache.estimateHeapBytes(tree) > json.length());
+        assertEquals(0, objectCache.getStats().getEntries());
+        assertEquals(0, objectCache.getStats().getWeightBytes());
+    }
+
+    @Test
+    void testGet_FailureIsNotCached() {
+        // Arrange
+        when(s3AsyncService.readFromS3IfModifiedAsync(eq("bad.json"), isNull(), anyParser()))
+                .thenReturn(CompletableFuture.failedFuture(new IOException("boom")));
+
+        // Act & Assert
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> objectCache.get("bad.json").get());
+        assertInstanceOf(IOException.class, exception.getCause());
+        assertThrows(ExecutionException.class, () -> objectCache.get("bad.json").get());
+        verify(s3AsyncService, times(2)).readFromS3IfModifiedAsync(eq("bad.json"), isNull(), anyParser());
+        assertEquals(0, objectCache.getStats().getEntries());
+    }
+
+    private static S3ObjectParser<JsonNode> anyParser() {
+        return any();
+    }
+
+    private S3ReadResult<JsonNode> modified(String json, String eTag, long size) throws IOException {
+        return S3ReadResult.modified(objectMapper.readTree(json), eTag, null, size);
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.s3jsonreader.service;
+
+import com.example.s3jsonreader.config.SchedulerConfig;
+import com.example.s3jsonreader.snapshot.AdDelta;
+import com.example.s3jsonreader.snapshot.AdSnapshot;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class S3ScheduledLoaderTest {
+
+    private static final String PAYLOAD = "p".repeat(500);
+
+    @Mock
+    private S3Service s3Service;
+
+    @TempDir
+    Path tempDir;
+
+    private final SchedulerConfig schedulerConfig = new SchedulerConfig();
+    private final S3DataCacheService cacheService = new S3DataCacheService(schedulerConfig);
+    private S3ScheduledLoader loader;
+    private String dataset;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        schedulerConfig.setOffHeapDirectory(tempDir.toString());
+        schedulerConfig.setSerializeCachedData(false);
+        // 10K ads: about 6 MB on the heap, about 1.5 MB with payloads off the heap
+        schedulerConfig.setHeapBudgetBytes(3 << 20);
+        loader = new S3ScheduledLoader(s3Service, cacheService, schedulerConfig, new S3FetchExecutors(false),
+                new S3LoaderMetrics(new SimpleMeterRegistry()));
+
+        when(s3Service.isShardedDataset()).thenReturn(false);
+        // Lenient since a test may replace it
+        lenient().when(s3Service.readFromS3IfModified(any(), any(), anyParser())).thenAnswer(invocation -> {
+            S3ObjectParser<AdSnapshot> parser = invocation.getArgument(2);
+            byte[] content = dataset.getBytes(StandardCharsets.UTF_8);
+            return S3ReadResult.modified(parser.parse(new ByteArrayInputStream(content)),
+                    "\"" + dataset.length() + "\"", Instant.now());
+        });
+    }
+
+    @Test
+    void testRefresh_OverBudgetFallsBackToOffHeap() throws IOException {
+        dataset = dataset(10_000);
+
+        assertTrue(loader.triggerManualLoad());
+
+        // The heap attempt was abandoned and the refresh retried with payloads off the heap
+        verify(s3Service, times(2)).readFromS3IfModified(any(), any(), anyParser());
+        assertEquals(SchedulerConfig.PayloadStorage.OFF_HEAP, loader.getPayloadStorage());
+        AdSnapshot snapshot = cacheService.getCachedData();
+        assertEquals(10_000, snapshot.size());
+        assertEquals(PAYLOAD, snapshot.getPayload("ad_9999"));
+        assertTrue(snapshot.estimatedHeapBytes() < schedulerConfig.getHeapBudgetBytes());
+        assertEquals(0, cacheService.getStats().getHeapBudgetRejections());
+    }
+
+    @Test
+    void testRefresh_OverBudgetIsRejectedAndCachedDataKept() {
+        schedulerConfig.setHeapBudgetAction(SchedulerConfig.HeapBudgetAction.REJECT);
+        dataset = dataset(1_000);
+        assertTrue(loader.triggerManualLoad());
+        AdSnapshot cached = cacheService.getCachedData();
+
+        dataset = dataset(10_000);
+        assertFalse(loader.triggerManualLoad());
+
+        assertSame(cached, cacheService.getCachedData());
+        assertEquals(PAYLOAD, cached.getPayload("ad_999"));
+        assertEquals(SchedulerConfig.PayloadStorage.HEAP, loader.getPayloadStorage());
+        S3DataCacheService.CacheStats stats = cacheService.getStats();
+        assertEquals(1, stats.getHeapBudgetRejections());
+        assertEquals(1, stats.getFailedLoads());
+        assertEquals(cached.estimatedHeapBytes(), stats.getSnapshotHeapBytes());
+    }
+
+    @Test
+    void testRefresh_StatsReportCurrentAndPreviousSize() {
+        dataset = dataset(1_000);
+        assertTrue(loader.triggerManualLoad());
+        long first = cacheService.getCachedData().estimatedHeapBytes();
+
+        dataset = dataset(2_000);
+        assertTrue(loader.triggerManualLoad());
+
+        S3DataCacheService.CacheStats stats = cacheService.getStats();
+        assertEquals(first, stats.getPreviousSnapshotHeapBytes());
+        assertEquals(cacheService.getCachedData().estimatedHeapBytes(), stats.getSnapshotHeapBytes());
+        assertTrue(stats.getSnapshotHeapBytes() > first);
+    }
+
+    @Test
+    void testDeltas_SharedBaseIsCountedOnce() throws IOException {
+        // The base alone takes more than half of the budget
+        dataset = dataset(3_000);
+        givenDelta("{\"upserts\": {\"adIdToPayload\": {\"ad_new\": \"fresh\"}}}");
+
+        assertTrue(loader.triggerManualLoad());
+
+        AdSnapshot snapshot = cacheService.getCachedData();
+        assertEquals(1, snapshot.appliedDeltaCount());
+        assertEquals("fresh", snapshot.getPayload("ad_new"));
+        assertEquals(0, cacheService.getStats().getHeapBudgetRejections());
+    }
+
+    @Test
+    void testDeltas_OverBudgetAreRejectedAndCachedVersionKept() throws IOException {
+        dataset = dataset(1_000);
+        givenDelta("{\"upserts\": " + dataset(5_000) + "}");
+
+        assertFalse(loader.triggerManualLoad());
+
+        // The base was published, the deltas on top of it were not
+        AdSnapshot snapshot = cacheService.getCachedData();
+        assertEquals(1_000, snapshot.size());
+        assertEquals(0, snapshot.appliedDeltaCount());
+        assertEquals(1, cacheService.getStats().getVersion());
+        assertEquals(1, cacheService.getStats().getHeapBudgetRejections());
+    }
+
+    @Test
+    void testRefresh_ConcurrentLoadsRunOneAtATime() throws Exception {
+        dataset = dataset(100);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            firstStarted.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+                S3ObjectParser<AdSnapshot> parser = invocation.getArgument(2);
+                return S3ReadResult.modified(parser.parse(new ByteArrayInputStream(dataset.getBytes(StandardCharsets.UTF_8))),
+                        "\"v\"", Instant.now());
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }).when(s3Service).readFromS3IfModified(any(), any(), anyParser());
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Boolean> first = executor.submit(loader::triggerManualLoad);
+            assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+            Future<Boolean> second = executor.submit(loader::triggerManualLoad);
+            Thread.sleep(100);
+            release.countDown();
+
+            assertTrue(first.get(5, TimeUnit.SECONDS));
+            assertTrue(second.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, maxInFlight.get());
+        assertEquals(2, cacheService.getStats().getVersion());
+    }
+
+    private void givenDelta(String delta) throws IOException {
+        when(s3Service.isDeltaEnabled()).thenReturn(true);
+        when(s3Service.listDeltas()).thenReturn(List.of(S3Object.builder()
+                .key("deltas/0001.json").lastModified(Instant.now().plusSeconds(60)).build()));
+        when(s3Service.readFromS3IfModified(eq("deltas/0001.json"), any(), any(), anyDeltaParser())).thenAnswer(invocation -> {
+            S3ObjectParser<AdDelta> parser = invocation.getArgument(3);
+            byte[] content = delta.getBytes(StandardCharsets.UTF_8);
+            return S3ReadResult.modified(parser.parse(new ByteArrayInputStream(content)), "\"delta\"", Instant.now());
+        });
+    }
+
+    private static String dataset(int adCount) {
+        StringBuilder payloads = new StringBuilder();
+        StringBuilder queries = new StringBuilder();
+        for (int i = 0; i < adCount; i++) {
+            String separator = i > 0 ? "," : "";
+            payloads.append(separator).append("\"ad_").append(i).append("\":\"").append(PAYLOAD).append('"');
+            queries.append(separator).append("\"ad_").append(i).append("\":[\"q_").append(i % 50).append("\"]");
+        }
+        return "[{\"adIdToPayload\":{" + payloads + "},\"adIdToQueries\":{" + queries + "}}]";
+    }
+
+    private static S3ObjectParser<AdSnapshot> anyParser() {
+        return any();
+    }
+
+    private static S3ObjectParser<AdDelta> anyDeltaParser() {
+        return any();
+    }
+}
@@ -2,11 +2,14 @@ package com.example.s3jsonreader.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 import software.amazon.awssdk.core.ResponseInputStream;
@@ -14,19 +17,33 @@ import software.amazon.awssdk.http.AbortableInputStream;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
 import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.argThat;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -36,6 +53,17 @@ class S3ServiceTest {
     @Mock
     private S3Client s3Client;
 
+    @Spy
+    private S3ConcurrencyLimiter concurrencyLimiter = new S3ConcurrencyLimiter(2);
+
+    @Spy
+    private S3FetchExecutors fetchExecutors = new S3FetchExecutors(false);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private S3LoaderMetrics loaderMetrics = new S3LoaderMetrics(meterRegistry);
+
     @InjectMocks
     private S3Service s3Service;
 
@@ -50,6 +78,8 @@ class S3ServiceTest {
         // Set the bucket name and file key using reflection
         ReflectionTestUtils.setField(s3Service, "bucketName", BUCKET_NAME);
         ReflectionTestUtils.setField(s3Service, "jsonFileKey", JSON_FILE_KEY);
+        ReflectionTestUtils.setField(s3Service, "passthroughMaxConcurrentRequests", 1);
+        ReflectionTestUtils.setField(s3Service, "passthroughAcquireTimeout", Duration.ofMillis(50));
     }
 
     @Test
@@ -273,4 +303,317 @@ class S3ServiceTest {
         assertEquals(1, result.get("pagination").get("page").asInt());
         assertEquals(100, result.get("pagination").get("totalRecords").asInt());
     }
+
+    @Test
+    void testReadFromS3IfModified_Changed() throws IOException {
+        // Arrange
+        String jsonContent = "{\"version\": 2}";
+        Instant lastModified = Instant.parse("2024-01-02T00:00:00Z");
+
+        GetObjectResponse response = GetObjectResponse.builder()
+                .contentType("application/json")
+                .contentLength((long) jsonContent.length())
+                .eTag("\"etag-v2\"")
+                .lastModified(lastModified)
+                .build();
+
+        InputStream inputStream = new ByteArrayInputStream(jsonContent.getBytes(StandardCharsets.UTF_8));
+        ResponseInputStream<GetObjectResponse> responseInputStream =
+                new ResponseInputStream<>(response, AbortableInputStream.create(inputStream));
+
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenReturn(responseInputStream);
+
+        // Act
+        S3ReadResult<JsonNode> result = s3Service.readFromS3IfModified(JSON_FILE_KEY, "\"etag-v1\"", null, objectMapper::readTree);
+
+        // Assert
+        assertTrue(result.isModified());
+        assertEquals(2, result.getData().get("version").asInt());
+        assertEquals("\"etag-v2\"", result.getETag());
+        assertEquals(lastModified, result.getLastModified());
+
+        // Verify the previous ETag was sent as If-None-Match
+        verify(s3Client).getObject(argThat((GetObjectRequest request) ->
+                JSON_FILE_KEY.equals(request.key()) &&
+                        "\"etag-v1\"".equals(request.ifNoneMatch())
+        ));
+    }
+
+    @Test
+    void testReadFromS3IfModified_NotModified() throws IOException {
+        // Arrange - S3 answers a matching If-None-Match with 304
+        S3Exception notModified = (S3Exception) S3Exception.builder()
+                .message("Not Modified")
+                .statusCode(304)
+                .build();
+
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenThrow(notModified);
+
+        // Act
+        S3ReadResult<JsonNode> result = s3Service.readFromS3IfModified(JSON_FILE_KEY, "\"etag-v1\"", null, objectMapper::readTree);
+
+        // Assert
+        assertFalse(result.isModified());
+        assertNull(result.getData());
+        assertEquals("\"etag-v1\"", result.getETag());
+    }
+
+    @Test
+    void testReadFromS3IfModified_ParallelRangedDownload() throws IOException {
+        // Arrange - an object spanning several 16-byte parts, served per requested range
+        ReflectionTestUtils.setField(s3Service, "multipartDownloadEnabled", true);
+        ReflectionTestUtils.setField(s3Service, "multipartPartSize", 16L);
+        ReflectionTestUtils.setField(s3Service, "multipartParallelism", 3);
+
+        byte[] content = "{\"items\": [\"alpha\", \"beta\", \"gamma\", \"delta\"], \"count\": 4}"
+                .getBytes(StandardCharsets.UTF_8);
+
+        when(s3Client.headObject(any(HeadObjectRequest.class))).thenReturn(HeadObjectResponse.builder()
+                .contentLength((long) content.length)
+                .eTag("\"etag-large\"")
+                .build());
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenAnswer(invocation -> {
+            GetObjectRequest request = invocation.getArgument(0);
+            String[] range = request.range().substring("bytes=".length()).split("-");
+            int first = Integer.parseInt(range[0]);
+            int last = Integer.parseInt(range[1]);
+            InputStream part = new ByteArrayInputStream(content, first, last - first + 1);
+            return new ResponseInputStream<>(GetObjectResponse.builder().build(), AbortableInputStream.create(part));
+        });
+
+        try {
+            // Act
+            S3ReadResult<JsonNode> result = s3Service.readFromS3IfModified(JSON_FILE_KEY, null, null, objectMapper::readTree);
+
+            // Assert
+            assertTrue(result.isModified());
+            assertEquals("\"etag-large\"", result.getETag());
+            assertEquals(4, result.getData().get("count").asInt());
+            assertEquals("delta", result.getData().get("items").get(3).asText());
+
+            // Every part is pinned to the ETag reported by HeadObject
+            int expectedParts = (content.length + 15) / 16;
+            verify(s3Client, times(expectedParts)).getObject(argThat((GetObjectRequest request) ->
+                    "\"etag-large\"".equals(request.ifMatch()) && request.range() != null));
+        } finally {
+            s3Service.shutdown();
+        }
+    }
+
+    @Test
+    void testReadFromS3IfModified_RangedPartsRespectConcurrencyLimit() throws IOException {
+        // Arrange - four download threads but only two S3 request slots
+        ReflectionTestUtils.setField(s3Service, "multipartDownloadEnabled", true);
+        ReflectionTestUtils.setField(s3Service, "multipartPartSize", 4L);
+        ReflectionTestUtils.setField(s3Service, "multipartParallelism", 4);
+
+        byte[] content = "{\"count\": 12345678901234567890}".getBytes(StandardCharsets.UTF_8);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+
+        when(s3Client.headObject(any(HeadObjectRequest.class))).thenReturn(HeadObjectResponse.builder()
+                .contentLength((long) content.length)
+                .eTag("\"etag-large\"")
+                .build());
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            GetObjectRequest request = invocation.getArgument(0);
+            String[] range = request.range().substring("bytes=".length()).split("-");
+            int first = Integer.parseInt(range[0]);
+            int last = Integer.parseInt(range[1]);
+            InputStream part = new ByteArrayInputStream(content, first, last - first + 1) {
+                @Override
+                public void close() {
+                    inFlight.decrementAndGet();
+                }
+            };
+            return new ResponseInputStream<>(GetObjectResponse.builder().build(), AbortableInputStream.create(part));
+        });
+
+        try {
+            // Act
+            S3ReadResult<JsonNode> result = s3Service.readFromS3IfModified(JSON_FILE_KEY, null, null, objectMapper::readTree);
+
+            // Assert - a slot is held until the part's body is consumed
+            assertEquals("12345678901234567890", result.getData().get("count").asText());
+            assertTrue(maxInFlight.get() <= 2, "max in flight: " + maxInFlight.get());
+            assertEquals(0, concurrencyLimiter.getInFlight());
+        } finally {
+            s3Service.shutdown();
+        }
+    }
+
+    @Test
+    void testReadFromS3IfModified_GzipObjectIsDecompressed() throws IOException {
+        // Arrange
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write("{\"id\": 7}".getBytes(StandardCharsets.UTF_8));
+        }
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenReturn(new ResponseInputStream<>(
+                GetObjectResponse.builder().eTag("\"etag-gz\"").contentEncoding("gzip").build(),
+                AbortableInputStream.create(new ByteArrayInputStream(compressed.toByteArray()))));
+
+        // Act
+        S3ReadResult<JsonNode> result = s3Service.readFromS3IfModified(JSON_FILE_KEY, null, null, objectMapper::readTree);
+
+        // Assert
+        assertEquals(7, result.getData().get("id").asInt());
+    }
+
+    @Test
+    void testReadJsonFromS3ByKey_GzipObjectIsDecompressed() throws IOException {
+        // Arrange
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write("{\"id\": 7}".getBytes(StandardCharsets.UTF_8));
+        }
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenReturn(new ResponseInputStream<>(
+                GetObjectResponse.builder().build(),
+                AbortableInputStream.create(new ByteArrayInputStream(compressed.toByteArray()))));
+
+        // Act - no Content-Encoding, detected from the key suffix
+        JsonNode result = s3Service.readJsonFromS3ByKey("data.json.gz");
+
+        // Assert
+        assertEquals(7, result.get("id").asInt());
+    }
+
+    @Test
+    void testReadFromS3IfModified_RecordsFetchMetrics() throws IOException {
+        // Arrange
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write("{\"id\": 7}".getBytes(StandardCharsets.UTF_8));
+        }
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenReturn(new ResponseInputStream<>(
+                GetObjectResponse.builder().eTag("\"etag-gz\"").contentEncoding("gzip").build(),
+                AbortableInputStream.create(new ByteArrayInputStream(compressed.toByteArray()))));
+
+        // Act
+        s3Service.readFromS3IfModified(JSON_FILE_KEY, null, null, objectMapper::readTree);
+
+        // Assert - one GET timed, and the bytes counted as downloaded, i.e. compressed
+        assertEquals(1, meterRegistry.get("s3.fetch.first.byte").timer().count());
+        DistributionSummary bytes = meterRegistry.get("s3.fetch.bytes").summary();
+        assertEquals(1, bytes.count());
+        assertEquals(compressed.size(), bytes.totalAmount());
+    }
+
+    @Test
+    void testReadFromS3IfModified_NotModifiedRecordsNoDownload() throws IOException {
+        // Arrange
+        S3Exception notModified = (S3Exception) S3Exception.builder()
+                .message("Not Modified")
+                .statusCode(304)
+                .build();
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenThrow(notModified);
+
+        // Act
+        s3Service.readFromS3IfModified(JSON_FILE_KEY, "\"etag-v1\"", null, objectMapper::readTree);
+
+        // Assert
+        assertEquals(0, meterRegistry.get("s3.fetch.first.byte").timer().count());
+        assertEquals(0, meterRegistry.get("s3.fetch.bytes").summary().count());
+    }
+
+    @Test
+    void testOpenObject_StreamsBodyUnparsed() throws IOException {
+        // Arrange - not valid JSON, which passthrough must not care about
+        byte[] content = "{\"id\": 1, \"raw\": tru".getBytes(StandardCharsets.UTF_8);
+        when(s3Client.getObject(argThat((GetObjectRequest request) -> "raw.json".equals(request.key()))))
+                .thenReturn(new ResponseInputStream<>(GetObjectResponse.builder()
+                        .eTag("\"etag-raw\"")
+                        .contentLength((long) content.length)
+                        .contentType("application/json")
+                        .build(), AbortableInputStream.create(new ByteArrayInputStream(content))));
+
+        // Act
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (S3ObjectStream object = s3Service.openObject("raw.json", null)) {
+            // The slot comes from the passthrough limiter, so loader requests are not held up
+            assertEquals(1, s3Service.passthroughLimiter().getInFlight());
+            assertEquals(0, concurrencyLimiter.getInFlight());
+            object.transferTo(out, null);
+
+            // Assert
+            assertTrue(object.isModified());
+            assertEquals("\"etag-raw\"", object.getETag());
+            assertEquals(content.length, object.getContentLength());
+        }
+        assertEquals(new String(content, StandardCharsets.UTF_8), out.toString(StandardCharsets.UTF_8));
+        assertEquals(0, s3Service.passthroughLimiter().getInFlight());
+    }
+
+    @Test
+    void testOpenObject_AbortReleasesSlotOfAbandonedStream() throws IOException {
+        // Arrange
+        AtomicInteger aborted = new AtomicInteger();
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenAnswer(invocation -> new ResponseInputStream<>(
+                GetObjectResponse.builder().eTag("\"etag-raw\"").build(),
+                AbortableInputStream.create(new ByteArrayInputStream(new byte[16]), aborted::incrementAndGet)));
+        S3ObjectStream object = s3Service.openObject("raw.json", null);
+
+        // Act & Assert - all passthrough slots taken, a second client fails fast
+        IOException exception = assertThrows(IOException.class, () -> s3Service.openObject("raw.json", null));
+        assertTrue(exception.getMessage().contains("slot"), exception.getMessage());
+
+        object.abort();
+        object.abort();
+        object.close();
+        assertEquals(1, aborted.get());
+        assertEquals(0, s3Service.passthroughLimiter().getInFlight());
+        s3Service.openObject("raw.json", null).close();
+    }
+
+    @Test
+    void testOpenObject_NotModified() throws IOException {
+        // Arrange
+        S3Exception notModified = (S3Exception) S3Exception.builder()
+                .statusCode(304)
+                .build();
+        when(s3Client.getObject(argThat((GetObjectRequest request) -> "\"etag-raw\"".equals(request.ifNoneMatch()))))
+                .thenThrow(notModified);
+
+        // Act
+        try (S3ObjectStream object = s3Service.openObject("raw.json", "\"etag-raw\"")) {
+            // Assert
+            assertFalse(object.isModified());
+            assertEquals("\"etag-raw\"", object.getETag());
+            assertNull(object.getContent());
+        }
+        assertEquals(0, s3Service.passthroughLimiter().getInFlight());
+    }
+
+    @Test
+    void testListDatasetShards_FollowsContinuationTokens() throws IOException {
+        // Arrange
+        ReflectionTestUtils.setField(s3Service, "jsonFilePrefix", "data/");
+        when(s3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenAnswer(invocation -> {
+            ListObjectsV2Request request = invocation.getArgument(0);
+            if (request.continuationToken() == null) {
+                return ListObjectsV2Response.builder()
+                        .contents(S3Object.builder().key("data/").build(),
+                                S3Object.builder().key("data/part-00001.json").eTag("\"e1\"").build())
+                        .isTruncated(true)
+                        .nextContinuationToken("page-2")
+                        .build();
+            }
+            return ListObjectsV2Response.builder()
+                    .contents(S3Object.builder().key("data/part-00000.json").eTag("\"e0\"").build())
+                    .isTruncated(false)
+                    .build();
+        });
+
+        // Act
+        List<S3Object> shards = s3Service.listDatasetShards();
+
+        // Assert - folder placeholder skipped, shards sorted by key
+        assertTrue(s3Service.isShardedDataset());
+        assertEquals(List.of("data/part-00000.json", "data/part-00001.json"),
+                shards.stream().map(S3Object::key).toList());
+        verify(s3Client, times(2)).listObjectsV2(argThat((ListObjectsV2Request request) ->
+                "data/".equals(request.prefix()) && BUCKET_NAME.equals(request.bucket())));
+    }
 }
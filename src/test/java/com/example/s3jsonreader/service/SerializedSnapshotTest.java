@@ -0,0 +1,91 @@
+package com.example.s3jsonreader.service;
+
+import com.example.s3jsonreader.config.SchedulerConfig;
+import com.example.s3jsonreader.snapshot.AdSnapshot;
+import com.example.s3jsonreader.snapshot.AdSnapshotReader;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SerializedSnapshotTest {
+
+    private static final String JSON = """
+            [{"adIdToPayload": {"ad_1": "p1"}, "adIdToQueries": {"ad_1": ["shoes"]}}]
+            """;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AdSnapshotReader reader = new AdSnapshotReader(objectMapper);
+
+    @Test
+    void testOf_SerializesAndCompressesOnce() throws IOException {
+        AdSnapshot snapshot = read();
+
+        SerializedSnapshot serialized = SerializedSnapshot.of(snapshot, "\"v1\"", true, true, objectMapper);
+
+        JsonNode body = objectMapper.readTree(serialized.getJson());
+        assertEquals("p1", body.get(0).get("adIdToPayload").get("ad_1").asText());
+        assertEquals("shoes", body.get(0).get("adIdToQueries").get("ad_1").get(0).asText());
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(serialized.getGzip()))) {
+            assertArrayEquals(serialized.getJson(), in.readAllBytes());
+        }
+        assertEquals(serialized.getJson().length, serialized.getJsonLength());
+        assertNotEquals(serialized.getETag(), serialized.getGzipETag());
+    }
+
+    @Test
+    void testOf_ETagFollowsTheSourceVersion() throws IOException {
+        AdSnapshot snapshot = read();
+
+        String first = SerializedSnapshot.of(snapshot, "\"v1\"", false, false, objectMapper).getETag();
+
+        assertEquals(first, SerializedSnapshot.of(read(), "\"v1\"", true, false, objectMapper).getETag());
+        assertNotEquals(first, SerializedSnapshot.of(snapshot, "\"v2\"", false, false, objectMapper).getETag());
+        assertTrue(first.startsWith("\"") && first.endsWith("\""));
+    }
+
+    @Test
+    void testMatches() throws IOException {
+        SerializedSnapshot serialized = SerializedSnapshot.of(read(), "\"v1\"", false, false, objectMapper);
+
+        assertTrue(serialized.matches(serialized.getETag()));
+        assertTrue(serialized.matches("\"other\", " + serialized.getGzipETag()));
+        assertTrue(serialized.matches("*"));
+        assertFalse(serialized.matches("\"other\""));
+        assertFalse(serialized.matches(null));
+        assertNull(serialized.getJson());
+    }
+
+    @Test
+    void testCacheService_MemoizesUntilTheSnapshotChanges() throws IOException {
+        S3DataCacheService cacheService = new S3DataCacheService(new SchedulerConfig());
+        assertNull(cacheService.getSerializedData());
+
+        cacheService.updateCache(read(), "\"v1\"");
+        SerializedSnapshot first = cacheService.serializeCachedData();
+        assertNotNull(first.getGzip());
+        assertSame(first, cacheService.getSerializedData());
+
+        cacheService.updateCache(read(), "\"v2\"");
+        SerializedSnapshot second = cacheService.getSerializedData();
+        assertNotEquals(first.getETag(), second.getETag());
+        assertSame(cacheService.getCachedData(), second.getSnapshot());
+    }
+
+    private AdSnapshot read() throws IOException {
+        return reader.read(new ByteArrayInputStream(JSON.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.s3jsonreader.snapshot;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdSnapshotDeltaTest {
+
+    private static final String BASE = """
+            [{"adIdToPayload": {"ad_1": "p1", "ad_2": "p2", "ad_3": "p3"},
+              "adIdToQueries": {"ad_1": ["shoes"], "ad_2": ["shoes", "red"], "ad_3": ["hats"], "ad_4": ["red"]}}]
+            """;
+
+    private final AdSnapshotReader reader = new AdSnapshotReader(new ObjectMapper());
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testApply_UpsertsAndDeletes() throws IOException {
+        AdSnapshot base = reader.read(stream(BASE));
+
+        AdSnapshot updated = base.apply(delta("""
+                {"upserts": {"adIdToPayload": {"ad_2": "p2-new", "ad_5": "p5"},
+                             "adIdToQueries": {"ad_1": ["boots"], "ad_5": ["red", "shoes"]}},
+                 "deletes": ["ad_3", "ad_unknown"]}
+                """));
+
+        // Payloads: replaced, kept from the base, added, deleted
+        assertEquals("p2-new", updated.getPayload("ad_2"));
+        assertEquals("p1", updated.getPayload("ad_1"));
+        assertEquals("p5", updated.getPayload("ad_5"));
+        assertNull(updated.getPayload("ad_3"));
+        assertFalse(updated.containsAd("ad_3"));
+
+        // Queries are replaced only where the delta mentions them
+        assertEquals(Set.of("boots"), updated.getQueries("ad_1"));
+        assertEquals(Set.of("shoes", "red"), updated.getQueries("ad_2"));
+        assertEquals(Set.of("ad_2", "ad_5"), Set.copyOf(updated.getAdsForQuery("shoes")));
+        assertEquals(Set.of("ad_2", "ad_4", "ad_5"), Set.copyOf(updated.getAdsForQuery("red")));
+        assertEquals(List.of("ad_1"), updated.getAdsForQuery("boots"));
+        assertTrue(updated.getAdsForQuery("hats").isEmpty());
+
+        assertEquals(3, updated.size());
+        assertEquals(4, updated.adCount());
+        assertEquals(3, updated.queryCount());
+
+        // Containment and intersections see the overlay
+        assertTrue(updated.hasQuery("ad_1", "boots"));
+        assertFalse(updated.hasQuery("ad_1", "shoes"));
+        assertTrue(updated.hasQuery("ad_4", "red"));
+        assertFalse(updated.hasQuery("ad_3", "hats"));
+        assertEquals(Set.of("ad_2", "ad_5"), Set.copyOf(updated.getAdsForAllQueries(List.of("red", "shoes"))));
+        assertEquals(1, updated.appliedDeltaCount());
+
+        // The base is untouched and keeps serving readers
+        assertEquals("p3", base.getPayload("ad_3"));
+        assertEquals(Set.of("ad_1", "ad_2"), Set.copyOf(base.getAdsForQuery("shoes")));
+        assertEquals(0, base.appliedDeltaCount());
+    }
+
+    @Test
+    void testApply_ChainedDeltasAndReAdd() throws IOException {
+        AdSnapshot snapshot = reader.read(stream(BASE))
+                .apply(delta("{\"deletes\": [\"ad_1\"]}"))
+                .apply(delta("{\"upserts\": [{\"adIdToQueries\": {\"ad_1\": [\"hats\"]}}]}"));
+
+        // Re-added without a payload, the old one is gone
+        assertTrue(snapshot.containsAd("ad_1"));
+        assertNull(snapshot.getPayload("ad_1"));
+        assertEquals(Set.of("ad_1", "ad_3"), Set.copyOf(snapshot.getAdsForQuery("hats")));
+        assertEquals(List.of("ad_2"), snapshot.getAdsForQuery("shoes"));
+        assertEquals(2, snapshot.size());
+        assertEquals(2, snapshot.appliedDeltaCount());
+
+        // Posting arrays stay sorted
+        int[] ordinals = snapshot.getAdOrdinalsForQuery("hats");
+        assertTrue(ordinals[0] < ordinals[1]);
+    }
+
+    @Test
+    void testApply_PojoViewAndOffHeapBase() throws IOException {
+        AdSnapshot base = reader.read(stream(BASE), new AdSnapshotBuilder(MappedPayloadStore.writer(tempDir)));
+        AdSnapshot updated = base.apply(delta("""
+                {"upserts": {"adIdToPayload": {"ad_4": "p4"}}, "deletes": ["ad_2"]}
+                """));
+
+        Map<String, String> payloads = updated.asPojo().getAdIdToPayload();
+        assertEquals(Map.of("ad_1", "p1", "ad_3", "p3", "ad_4", "p4"), Map.copyOf(payloads));
+        assertEquals(3, payloads.size());
+        assertEquals(Set.of("ad_1", "ad_3", "ad_4"), Map.copyOf(updated.asPojo().getAdIdToQueries()).keySet());
+
+        // Layered snapshots are never persisted, only their base
+        assertThrows(IllegalArgumentException.class,
+                () -> AdSnapshotFile.write(updated, null, null, tempDir.resolve("snapshot.bin")));
+        updated.close();
+    }
+
+    @Test
+    void testReadDelta_InvalidDocument() {
+        assertThrows(IOException.class, () -> reader.readDelta(stream("[1, 2]")));
+        assertThrows(IOException.class, () -> reader.readDelta(stream("{\"deletes\": [{\"id\": 1}]}")));
+    }
+
+    private AdDelta delta(String json) throws IOException {
+        return reader.readDelta(stream(json));
+    }
+
+    private static ByteArrayInputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
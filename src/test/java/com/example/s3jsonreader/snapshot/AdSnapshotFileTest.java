@@ -0,0 +1,78 @@
+package com.example.s3jsonreader.snapshot;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdSnapshotFileTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testRoundTrip_HeapAndOffHeap() throws IOException {
+        AdSnapshot original = readLocalJson();
+        Path file = tempDir.resolve("snapshot.bin");
+        Instant lastModified = Instant.parse("2024-01-02T03:04:05Z");
+
+        AdSnapshotFile.write(original, "\"etag-1\"", lastModified, file);
+
+        for (boolean offHeap : new boolean[]{false, true}) {
+            AdSnapshotFile.Restored restored = AdSnapshotFile.read(file, offHeap);
+            AdSnapshot snapshot = restored.getSnapshot();
+
+            assertEquals("\"etag-1\"", restored.getETag());
+            assertEquals(lastModified, restored.getLastModified());
+            assertEquals(original.size(), snapshot.size());
+            assertEquals("payload_content_001", snapshot.getPayload("ad_001"));
+            assertEquals("payload_content_005", snapshot.getPayload("ad_005"));
+            assertEquals(Set.of("query_002_a", "query_002_b"), snapshot.getQueries("ad_002"));
+            assertEquals(Set.of("ad_003"), Set.copyOf(snapshot.getAdsForQuery("query_003_c")));
+            assertNull(snapshot.getPayload("ad_999"));
+
+            // The persisted file belongs to the loader, closing a restored snapshot keeps it
+            snapshot.close();
+            assertTrue(Files.exists(file));
+        }
+    }
+
+    @Test
+    void testRead_CorruptFileIsRejected() throws IOException {
+        Path file = tempDir.resolve("snapshot.bin");
+        AdSnapshotFile.write(readLocalJson(), null, null, file);
+
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 0x5A;
+        Files.write(file, bytes);
+
+        IOException exception = assertThrows(IOException.class, () -> AdSnapshotFile.read(file, false));
+        assertTrue(exception.getMessage().contains("checksum"));
+    }
+
+    @Test
+    void testRead_TruncatedFileIsRejected() throws IOException {
+        Path file = tempDir.resolve("snapshot.bin");
+        Files.write(file, new byte[]{0x41, 0x44});
+
+        assertThrows(IOException.class, () -> AdSnapshotFile.read(file, false));
+    }
+
+    private AdSnapshot readLocalJson() throws IOException {
+        try (InputStream in = new FileInputStream("src/test/resources/s3.json")) {
+            return new AdSnapshotReader(new ObjectMapper()).read(in);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.s3jsonreader.snapshot;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdSnapshotReaderTest {
+
+    private final AdSnapshotReader reader = new AdSnapshotReader(new ObjectMapper());
+
+    @Test
+    void testReadLocalJson_MergesAllElements() throws IOException {
+        AdSnapshot snapshot;
+        try (InputStream in = new FileInputStream("src/test/resources/s3.json")) {
+            snapshot = reader.read(in);
+        }
+
+        // Both array elements end up in one index
+        assertEquals(5, snapshot.size());
+        assertEquals("payload_content_001", snapshot.getPayload("ad_001"));
+        assertEquals("payload_content_005", snapshot.getPayload("ad_005"));
+        assertEquals(Set.of("query_004_a", "query_004_b"), snapshot.getQueries("ad_004"));
+        assertEquals(4, snapshot.getQueries("ad_003").size());
+
+        // Unknown ads
+        assertNull(snapshot.getPayload("ad_999"));
+        assertNull(snapshot.getQueries("ad_999"));
+        assertFalse(snapshot.containsAd("ad_999"));
+
+        // Lookups return the stored instances
+        assertSame(snapshot.getQueries("ad_001"), snapshot.getQueries("ad_001"));
+    }
+
+    @Test
+    void testRead_DuplicateAdIdsAcrossElements() throws IOException {
+        String json = """
+                [
+                  {"adIdToPayload": {"ad_1": "old"}, "adIdToQueries": {"ad_1": ["q1"]}},
+                  {"adIdToPayload": {"ad_1": "new"}, "adIdToQueries": {"ad_1": ["q2"]}}
+                ]
+                """;
+
+        AdSnapshot snapshot = reader.read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+        // Last payload wins, queries are merged
+        assertEquals("new", snapshot.getPayload("ad_1"));
+        assertEquals(Set.of("q1", "q2"), snapshot.getQueries("ad_1"));
+    }
+
+    @Test
+    void testReadInto_ShardsMergedInOrder() throws IOException {
+        String first = "{\"adIdToPayload\": {\"ad_1\": \"old\", \"ad_2\": \"p2\"}, \"adIdToQueries\": {\"ad_1\": [\"q1\"]}}";
+        String second = "{\"adIdToPayload\": {\"ad_1\": \"new\"}, \"adIdToQueries\": {\"ad_1\": [\"q2\"], \"ad_3\": [\"q1\"]}}";
+
+        // Shards are parsed independently (in any order) and merged in source order
+        AdSnapshotBuilder builder = new AdSnapshotBuilder();
+        AdSnapshotBuilder secondShard = builder.newShardBuilder();
+        reader.readInto(new ByteArrayInputStream(second.getBytes(StandardCharsets.UTF_8)), secondShard);
+        AdSnapshotBuilder firstShard = builder.newShardBuilder();
+        reader.readInto(new ByteArrayInputStream(first.getBytes(StandardCharsets.UTF_8)), firstShard);
+        AdSnapshot snapshot = builder.merge(firstShard).merge(secondShard).build();
+
+        assertEquals("new", snapshot.getPayload("ad_1"));
+        assertEquals("p2", snapshot.getPayload("ad_2"));
+        assertEquals(Set.of("q1", "q2"), snapshot.getQueries("ad_1"));
+        assertEquals(Set.of("ad_1", "ad_3"), Set.copyOf(snapshot.getAdsForQuery("q1")));
+        assertThrows(IllegalArgumentException.class, () -> new AdSnapshotBuilder().merge(builder.newShardBuilder()));
+    }
+
+    @Test
+    void testBuild_ManyAdsAcrossShards() throws IOException {
+        int adCount = 5_000;
+        AdSnapshotBuilder builder = new AdSnapshotBuilder();
+        AdSnapshotBuilder first = builder.newShardBuilder();
+        AdSnapshotBuilder second = builder.newShardBuilder();
+        for (int i = 0; i < adCount; i++) {
+            AdSnapshotBuilder shard = i % 2 == 0 ? first : second;
+            shard.putPayload("ad_" + i, "p" + i);
+            shard.addQueries("ad_" + i, List.of("a" + i % 7, "b" + i % 11));
+        }
+        second.addQuery("ad_0", "extra");
+        AdSnapshot snapshot = builder.merge(first).merge(second).build();
+
+        assertEquals(adCount, snapshot.size());
+        assertEquals(19, snapshot.queryCount());
+        assertEquals("p4321", snapshot.getPayload("ad_4321"));
+        assertEquals(Set.of("a2", "b9"), snapshot.getQueries("ad_4321"));
+        assertEquals(Set.of("a0", "b0", "extra"), snapshot.getQueries("ad_0"));
+        assertEquals((adCount + 6) / 7, snapshot.getAdsForQuery("a0").size());
+    }
+
+    @Test
+    void testQueryIndex() throws IOException {
+        String json = """
+                [
+                  {"adIdToPayload": {"ad_1": "p1", "ad_2": "p2"},
+                   "adIdToQueries": {"ad_1": ["shoes", "red"], "ad_2": ["shoes"]}},
+                  {"adIdToPayload": {"ad_3": "p3"},
+                   "adIdToQueries": {"ad_3": ["red", "shoes"], "ad_4": ["hats"]}}
+                ]
+                """;
+
+        AdSnapshot snapshot = reader.read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(Set.of("ad_1", "ad_2", "ad_3"), Set.copyOf(snapshot.getAdsForQuery("shoes")));
+        assertEquals(Set.of("ad_1", "ad_3"), Set.copyOf(snapshot.getAdsForQuery("red")));
+        // Ads with queries but no payload are still indexed
+        assertEquals(List.of("ad_4"), snapshot.getAdsForQuery("hats"));
+        assertTrue(snapshot.getAdsForQuery("unknown").isEmpty());
+        assertEquals(3, snapshot.queryCount());
+
+        // Posting arrays are sorted and resolve back to ad ids
+        int[] ordinals = snapshot.getAdOrdinalsForQuery("shoes");
+        for (int i = 1; i < ordinals.length; i++) {
+            assertTrue(ordinals[i - 1] < ordinals[i]);
+        }
+        assertSame(ordinals, snapshot.getAdOrdinalsForQuery("shoes"));
+    }
+
+    @Test
+    void testQueryDictionary_SharedStringsAndIntersection() throws IOException {
+        String json = """
+                [
+                  {"adIdToQueries": {"ad_1": ["shoes", "red", "shoes"], "ad_2": ["shoes"]}},
+                  {"adIdToQueries": {"ad_3": ["red", "shoes", "sale"], "ad_1": ["sale"]}}
+                ]
+                """;
+
+        AdSnapshot snapshot = reader.read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+        // Each distinct query string is held once, whichever ad it is read through
+        assertSame(snapshot.getQueries("ad_1").stream().filter("shoes"::equals).findFirst().orElseThrow(),
+                snapshot.getQueries("ad_2").iterator().next());
+        assertEquals(Set.of("shoes", "red", "sale"), snapshot.getQueries("ad_1"));
+        assertEquals(3, snapshot.queryCount());
+
+        assertTrue(snapshot.hasQuery("ad_3", "sale"));
+        assertFalse(snapshot.hasQuery("ad_2", "sale"));
+        assertFalse(snapshot.hasQuery("ad_2", "unknown"));
+        assertFalse(snapshot.hasQuery("ad_999", "shoes"));
+
+        assertEquals(List.of("ad_1", "ad_3"), sorted(snapshot.getAdsForAllQueries(List.of("shoes", "sale", "red"))));
+        assertEquals(3, snapshot.getAdsForAllQueries(List.of("shoes")).size());
+        assertTrue(snapshot.getAdsForAllQueries(List.of("shoes", "unknown")).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> snapshot.getAdsForAllQueries(List.of()));
+    }
+
+    @Test
+    void testRead_StreamingEdgeCases() throws IOException {
+        // Single root object, unknown fields, structured payload, nulls and empty query arrays
+        String json = """
+                {
+                  "version": {"nested": [1, 2, 3]},
+                  "adIdToPayload": {"ad_1": {"title": "Shoes", "price": 10}, "ad_2": 42, "ad_3": null},
+                  "adIdToQueries": {"ad_1": ["shoes", null], "ad_2": []}
+                }
+                """;
+
+        AdSnapshot snapshot = reader.read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals("{\"title\":\"Shoes\",\"price\":10}", snapshot.getPayload("ad_1"));
+        assertEquals("42", snapshot.getPayload("ad_2"));
+        assertNull(snapshot.getPayload("ad_3"));
+        assertEquals(Set.of("shoes"), snapshot.getQueries("ad_1"));
+        assertTrue(snapshot.getQueries("ad_2").isEmpty());
+    }
+
+    @Test
+    void testRead_InvalidElement() {
+        String json = "[{\"adIdToPayload\": {\"ad_1\": \"p\"}}, \"not an object\"]";
+
+        assertThrows(IOException.class,
+                () -> reader.read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    void testSnapshotIsImmutable() throws IOException {
+        String json = "[{\"adIdToPayload\": {\"ad_1\": \"p\"}, \"adIdToQueries\": {\"ad_1\": [\"q\"]}}]";
+
+        AdSnapshot snapshot = reader.read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.getQueries("ad_1").add("other"));
+        assertThrows(UnsupportedOperationException.class,
+                () -> snapshot.asPojo().getAdIdToPayload().put("ad_2", "p"));
+        assertTrue(snapshot.containsAd("ad_1"));
+    }
+
+    private static List<String> sorted(List<String> adIds) {
+        return adIds.stream().sorted().toList();
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.s3jsonreader.snapshot;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.LongPredicate;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedPayloadStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testWriteAndReadPayloads() throws IOException {
+        PayloadStore.Writer writer = MappedPayloadStore.writer(tempDir);
+        long first = writer.append("payload_content_001");
+        long second = writer.append("größe – 広告");
+        long empty = writer.append("");
+
+        PayloadStore store = writer.finish(new long[]{second, PayloadStore.Writer.NO_PAYLOAD, first, empty});
+
+        assertEquals("größe – 広告", store.get(0));
+        assertNull(store.get(1));
+        assertEquals("payload_content_001", store.get(2));
+        assertEquals("", store.get(3));
+        assertEquals(3, store.size());
+        assertTrue(store.storedBytes() > 0);
+
+        // Closing deletes the backing file
+        assertEquals(1, countFiles());
+        store.close();
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    void testSnapshotWithOffHeapPayloads() throws IOException {
+        AdSnapshotReader reader = new AdSnapshotReader(new ObjectMapper());
+
+        AdSnapshot snapshot;
+        try (InputStream in = new FileInputStream("src/test/resources/s3.json")) {
+            snapshot = reader.read(in, new AdSnapshotBuilder(MappedPayloadStore.writer(tempDir)));
+        }
+
+        assertEquals(5, snapshot.size());
+        assertEquals("payload_content_003", snapshot.getPayload("ad_003"));
+        assertNull(snapshot.getPayload("ad_999"));
+        assertEquals("payload_content_005", snapshot.asPojo().getAdIdToPayload().get("ad_005"));
+        assertEquals(5, snapshot.asPojo().getAdIdToPayload().entrySet().stream().count());
+
+        snapshot.close();
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    void testAbortDeletesFile() throws IOException {
+        PayloadStore.Writer writer = MappedPayloadStore.writer(tempDir);
+        writer.append("partial");
+
+        writer.abort();
+
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    void testClose_CountsTheMappingUntilItIsCollected() throws Exception {
+        PayloadStore.Writer writer = MappedPayloadStore.writer(tempDir);
+        PayloadStore store = writer.finish(new long[]{writer.append("x".repeat(1 << 20))});
+        long mapped = store.storedBytes();
+        // Let stores closed by earlier tests be collected first
+        long before = collectGarbage(current -> false);
+
+        store.close();
+        store.close();
+        assertEquals(before + mapped, MappedPayloadStore.closedMappedBytes());
+
+        store = null;
+        assertTrue(collectGarbage(current -> current <= before) <= before);
+    }
+
+    /**
+     * Runs the garbage collector until the closed mapped bytes satisfy the condition or stop changing
+     */
+    private static long collectGarbage(LongPredicate done) throws InterruptedException {
+        long previous = -1;
+        for (int i = 0; i < 100; i++) {
+            System.gc();
+            Thread.sleep(20);
+            long current = MappedPayloadStore.closedMappedBytes();
+            if (done.test(current) || (current == previous && i >= 5)) {
+                return current;
+            }
+            previous = current;
+        }
+        return MappedPayloadStore.closedMappedBytes();
+    }
+
+    private long countFiles() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.count();
+        }
+    }
+}
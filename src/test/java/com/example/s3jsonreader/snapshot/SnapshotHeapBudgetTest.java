@@ -0,0 +1,92 @@
+package com.example.s3jsonreader.snapshot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnapshotHeapBudgetTest {
+
+    private static final int AD_COUNT = 20_000;
+    private static final String PAYLOAD = "x".repeat(200);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testEstimatedHeapBytes_CountsPayloadsOnlyOnTheHeap() throws IOException {
+        AdSnapshot onHeap = fill(new AdSnapshotBuilder(HeapPayloadStore.writer())).build();
+        AdSnapshot offHeap = fill(new AdSnapshotBuilder(MappedPayloadStore.writer(tempDir))).build();
+
+        try (onHeap; offHeap) {
+            long payloadHeap = onHeap.estimatedHeapBytes() - offHeap.estimatedHeapBytes();
+            // Each 200-char payload costs at least its bytes plus the String and array headers
+            assertTrue(payloadHeap > (long) AD_COUNT * PAYLOAD.length(), "payload heap " + payloadHeap);
+            assertTrue(payloadHeap < (long) AD_COUNT * (PAYLOAD.length() + 64), "payload heap " + payloadHeap);
+            // Ids, slots, query sets and postings: tens of bytes per ad
+            assertTrue(offHeap.estimatedHeapBytes() > AD_COUNT * 50L, "index heap " + offHeap.estimatedHeapBytes());
+        }
+    }
+
+    @Test
+    void testEstimatedHeapBytes_DeltaAddsOverlay() throws IOException {
+        AdSnapshot base = fill(new AdSnapshotBuilder()).build();
+        AdSnapshot upserts = new AdSnapshotBuilder().putPayload("ad_new", PAYLOAD).addQuery("ad_new", "q_1").build();
+
+        AdSnapshot derived = base.apply(new AdDelta(upserts, Set.of("ad_1")));
+
+        assertTrue(derived.estimatedHeapBytes() > base.estimatedHeapBytes());
+        assertTrue(derived.estimatedHeapBytes() - base.estimatedHeapBytes() < 10_000);
+    }
+
+    @Test
+    void testBuilder_FailsWhileParsingOnceBudgetIsSpent() throws IOException {
+        long limit = 4 << 20;
+        AdSnapshotBuilder builder = new AdSnapshotBuilder(MappedPayloadStore.writer(tempDir), new SnapshotHeapBudget(limit, 0));
+
+        // Off the heap, payloads are free, so only the index counts
+        assertDoesNotThrow(() -> fill(builder));
+
+        AdSnapshotBuilder onHeap = new AdSnapshotBuilder(HeapPayloadStore.writer(), new SnapshotHeapBudget(limit, 0));
+        HeapBudgetExceededException e = assertThrows(HeapBudgetExceededException.class, () -> fill(onHeap));
+        assertEquals(limit, e.getLimitBytes());
+        assertTrue(e.getRequiredBytes() > e.getLimitBytes());
+        onHeap.abort();
+        builder.abort();
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void testBuild_CountsHeapAlreadyInUse() throws IOException {
+        AdSnapshot snapshot = fill(new AdSnapshotBuilder()).build();
+        long size = snapshot.estimatedHeapBytes();
+        SnapshotHeapBudget budget = new SnapshotHeapBudget(size * 2, 0);
+
+        assertDoesNotThrow(() -> budget.check(snapshot, size));
+        assertThrows(HeapBudgetExceededException.class, () -> budget.check(snapshot, size + 1));
+        assertDoesNotThrow(() -> SnapshotHeapBudget.UNLIMITED.check(snapshot, Long.MAX_VALUE / 2));
+
+        // The same data no longer fits once the current snapshot takes most of the budget
+        SnapshotHeapBudget tight = new SnapshotHeapBudget(size * 2, size * 2 - 1024);
+        assertThrows(HeapBudgetExceededException.class, () -> fill(new AdSnapshotBuilder(HeapPayloadStore.writer(), tight)).build());
+    }
+
+    private static AdSnapshotBuilder fill(AdSnapshotBuilder builder) throws IOException {
+        for (int i = 0; i < AD_COUNT; i++) {
+            builder.putPayload("ad_" + i, PAYLOAD);
+            builder.addQuery("ad_" + i, "q_" + (i % 100));
+        }
+        return builder;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.s3jsonreader.snapshot;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SnapshotPathTest {
+
+    private static final String JSON = """
+            [{"adIdToPayload": {"ad_1": "p1", "ad/2": "p2"},
+              "adIdToQueries": {"ad_1": ["shoes"], "ad/2": ["red"]}}]
+            """;
+
+    private final AdSnapshotReader reader = new AdSnapshotReader(new ObjectMapper());
+
+    @Test
+    void testResolve_PointLookups() throws IOException {
+        AdSnapshot snapshot = read();
+
+        assertEquals("p1", SnapshotPath.compile("/adIdToPayload/ad_1").resolve(snapshot));
+        assertEquals("p2", SnapshotPath.compile("/adIdToPayload/ad~12").resolve(snapshot));
+        assertEquals(Set.of("shoes"), SnapshotPath.compile("/adIdToQueries/ad_1").resolve(snapshot));
+        assertEquals("red", SnapshotPath.compile("/adIdToQueries/ad~12/0").resolve(snapshot));
+    }
+
+    @Test
+    void testResolve_MissingValuesAreNull() throws IOException {
+        AdSnapshot snapshot = read();
+
+        assertNull(SnapshotPath.compile("/adIdToPayload/ad_9").resolve(snapshot));
+        assertNull(SnapshotPath.compile("/adIdToQueries/ad_9").resolve(snapshot));
+        assertNull(SnapshotPath.compile("/adIdToQueries/ad_1/1").resolve(snapshot));
+    }
+
+    @Test
+    void testResolve_WholeMapsAreViews() throws IOException {
+        AdSnapshot snapshot = read();
+
+        Map<?, ?> payloads = assertInstanceOf(Map.class, SnapshotPath.compile("/adIdToPayload").resolve(snapshot));
+        assertEquals(2, payloads.size());
+        assertEquals("p1", payloads.get("ad_1"));
+        assertEquals(2, ((Map<?, ?>) SnapshotPath.compile("/adIdToQueries").resolve(snapshot)).size());
+    }
+
+    @Test
+    void testCompile_RejectsPathsOutsideTheDocument() {
+        assertThrows(IllegalArgumentException.class, () -> SnapshotPath.compile("adIdToPayload"));
+        assertThrows(IllegalArgumentException.class, () -> SnapshotPath.compile("/unknown/ad_1"));
+        assertThrows(IllegalArgumentException.class, () -> SnapshotPath.compile("/adIdToPayload/ad_1/0"));
+        assertThrows(IllegalArgumentException.class, () -> SnapshotPath.compile("/adIdToQueries/ad_1/first"));
+        assertThrows(IllegalArgumentException.class, () -> SnapshotPath.compile(null));
+    }
+
+    private AdSnapshot read() throws IOException {
+        return reader.read(new ByteArrayInputStream(JSON.getBytes(StandardCharsets.UTF_8)));
+    }
+}
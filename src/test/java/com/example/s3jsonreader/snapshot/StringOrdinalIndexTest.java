@@ -0,0 +1,42 @@
+package com.example.s3jsonreader.snapshot;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class StringOrdinalIndexTest {
+
+    @Test
+    void testIndexOverArray() {
+        String[] keys = {"ad_1", "ad_2", "ad_3"};
+        StringOrdinalIndex index = new StringOrdinalIndex(keys);
+
+        assertEquals(0, index.ordinalOf("ad_1"));
+        assertEquals(2, index.ordinalOf(new String("ad_3")));
+        assertEquals(-1, index.ordinalOf("ad_4"));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void testAdd_GrowsAndKeepsFirstInstance() {
+        StringOrdinalIndex index = new StringOrdinalIndex();
+        int count = 10_000;
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, index.add("query_" + i));
+        }
+
+        String first = index.keyOf(42);
+        assertEquals(42, index.add(new String("query_42")));
+        assertSame(first, index.keyOf(42));
+        assertEquals(count, index.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, index.ordinalOf("query_" + i));
+        }
+        assertEquals(-1, index.ordinalOf("query_" + count));
+        assertArrayEquals(new String[]{"query_0", "query_1"}, Arrays.copyOf(index.toArray(), 2));
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.s3jsonreader.tool;
+
+import com.example.s3jsonreader.snapshot.AdSnapshot;
+import com.example.s3jsonreader.snapshot.AdSnapshotReader;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnapshotConverterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AdSnapshotReader reader = new AdSnapshotReader(objectMapper);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testJsonToSmile_ReadsBackToTheSameSnapshot() throws IOException {
+        byte[] json = document(200);
+        ByteArrayOutputStream smile = new ByteArrayOutputStream();
+
+        SnapshotConverter.jsonToSmile(new ByteArrayInputStream(json), smile);
+
+        AdSnapshot fromJson = reader.read(new ByteArrayInputStream(json));
+        AdSnapshot fromSmile = reader.read(new ByteArrayInputStream(smile.toByteArray()));
+        assertEquals(fromJson.size(), fromSmile.size());
+        assertEquals(fromJson.queryCount(), fromSmile.queryCount());
+        assertEquals("payload for ad_00042", fromSmile.getPayload("ad_00042"));
+        assertEquals("{\"price\":7}", fromSmile.getPayload("ad_00007"));
+        assertEquals(Set.of("query_2", "query_shared"), fromSmile.getQueries("ad_00042"));
+        assertEquals(fromJson.getAdsForQuery("query_shared"), fromSmile.getAdsForQuery("query_shared"));
+
+        // Back-referenced names and repeated queries make the encoding markedly smaller
+        assertTrue(smile.size() < json.length * 3 / 4, smile.size() + " vs " + json.length);
+    }
+
+    @Test
+    void testSmileToJson_RoundTrip() throws IOException {
+        Path json = tempDir.resolve("data.json");
+        Path smile = tempDir.resolve("data.smile");
+        Path back = tempDir.resolve("back.json");
+        Files.write(json, document(10));
+
+        SnapshotConverter.jsonToSmile(json, smile);
+        SnapshotConverter.smileToJson(smile, back);
+
+        assertEquals(objectMapper.readTree(json.toFile()), objectMapper.readTree(back.toFile()));
+        try (InputStream in = Files.newInputStream(smile)) {
+            assertEquals(10, reader.read(in).size());
+        }
+    }
+
+    private byte[] document(int ads) throws IOException {
+        StringBuilder payloads = new StringBuilder();
+        StringBuilder queries = new StringBuilder();
+        for (int i = 0; i < ads; i++) {
+            String adId = String.format("ad_%05d", i);
+            String separator = i == 0 ? "" : ", ";
+            payloads.append(separator).append('"').append(adId).append("\": ")
+                    .append(i == 7 ? "{\"price\": 7}" : "\"payload for " + adId + "\"");
+            queries.append(separator).append('"').append(adId).append("\": ")
+                    .append(objectMapper.writeValueAsString(List.of("query_" + i % 5, "query_shared")));
+        }
+        return ("[{\"adIdToPayload\": {" + payloads + "}, \"adIdToQueries\": {" + queries + "}}]")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.s3jsonreader.tool;
+
+import com.example.s3jsonreader.snapshot.AdSnapshot;
+import com.example.s3jsonreader.snapshot.AdSnapshotReader;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.IntSummaryStatistics;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SyntheticDatasetWriterTest {
+
+    @Test
+    void testWrite_ReadableAndReproducible() throws IOException {
+        SyntheticAds ads = new SyntheticAds(1_000);
+        byte[] first = write(ads);
+
+        AdSnapshot snapshot = new AdSnapshotReader(new ObjectMapper()).read(new ByteArrayInputStream(first));
+        assertEquals(1_000, snapshot.size());
+        assertEquals(ads.payload(7), snapshot.getPayload(ads.adId(7)));
+        assertEquals(new HashSet<>(ads.queries(7)), snapshot.getQueries(ads.adId(7)));
+        assertEquals(64, snapshot.getPayload(ads.adId(999)).length());
+
+        // Same parameters give the same bytes, another seed gives other content
+        assertArrayEquals(first, write(new SyntheticAds(1_000)));
+        assertNotEquals(ads.payload(7), new SyntheticAds(1_000, 4, 100, 64, 7L).payload(7));
+    }
+
+    @Test
+    void testSkewed_PopularQueriesAndLongTailPayloads() throws IOException {
+        SyntheticAds ads = SyntheticAds.skewed(10_000, 1L);
+        AdSnapshot snapshot = new AdSnapshotReader(new ObjectMapper()).read(new ByteArrayInputStream(write(ads)));
+
+        // The most popular query is shared by a large share of the ads, a typical one by few
+        assertTrue(snapshot.getAdsForQuery("query_0").size() > 1_000);
+        assertTrue(snapshot.getAdsForQuery("query_500").size() < 20);
+
+        IntSummaryStatistics payloadLengths = IntStream.range(0, 10_000)
+                .map(i -> snapshot.getPayload(ads.adId(i)).length())
+                .summaryStatistics();
+        assertEquals(64, payloadLengths.getMin());
+        assertTrue(payloadLengths.getMax() > 1_000);
+        assertTrue(payloadLengths.getAverage() > 100 && payloadLengths.getAverage() < 300);
+    }
+
+    private static byte[] write(SyntheticAds ads) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SyntheticDatasetWriter.write(ads, out);
+        return out.toByteArray();
+    }
+}